@@ -0,0 +1,99 @@
+package com.etosevevenz.cloudgateway.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// http.client.* in application.yml, the connection pool behind RestTemplate
+public class HttpClientProperties {
+
+    // Open connections over all routes
+    private int maxTotal = 200;
+    // Open connections per route (scheme://host:port) unless listed in routes
+    private int maxPerRoute = 50;
+    // Per-route limits, e.g. "[http://localhost:8082]": 100
+    private Map<String, Integer> routes = new LinkedHashMap<>();
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    // Longest wait for a free connection when the route is at its limit
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+    // Longest wait for response data
+    private Duration readTimeout = Duration.ofSeconds(10);
+    // Idle pooled connections are closed after this
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    // Connections are not reused past this age, so DNS changes and server-side limits are picked up
+    private Duration timeToLive = Duration.ofMinutes(5);
+    // A connection idle longer than this is checked before reuse (stale check)
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public Map<String, Integer> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Integer> routes) {
+        this.routes = routes;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    public void setValidateAfterInactivity(Duration validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+}
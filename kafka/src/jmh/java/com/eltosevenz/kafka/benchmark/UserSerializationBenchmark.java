@@ -0,0 +1,77 @@
+package com.eltosevenz.kafka.benchmark;
+
+import com.eltosevenz.kafka.payload.User;
+import com.eltosevenz.kafka.serializer.UserBinaryDeserializer;
+import com.eltosevenz.kafka.serializer.UserBinarySerializer;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Encode/decode cost of a User record: Spring's JSON serializer (with its type header, as the producer sends it)
+// against UserBinarySerializer. Record sizes (value plus headers) are printed once per fork.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    private static final String TOPIC = "demo-topic";
+
+    private final JsonSerializer<User> jsonSerializer = new JsonSerializer<>();
+    private final JsonDeserializer<User> jsonDeserializer = new JsonDeserializer<>();
+    private final UserBinarySerializer binarySerializer = new UserBinarySerializer();
+    private final UserBinaryDeserializer binaryDeserializer = new UserBinaryDeserializer();
+
+    private User user;
+    private byte[] json;
+    private RecordHeaders jsonHeaders;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        // Keep the type header on the shared headers, every invocation reads it again
+        jsonDeserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.eltosevenz.kafka.payload",
+                JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false), false);
+        user = new User();
+        user.setId(123456);
+        user.setFirstName("Margaret");
+        user.setLastName("Hamilton");
+
+        jsonHeaders = new RecordHeaders();
+        json = jsonSerializer.serialize(TOPIC, jsonHeaders, user);
+        binary = binarySerializer.serialize(TOPIC, user);
+        int headerBytes = 0;
+        for (Header header : jsonHeaders) {
+            headerBytes += header.key().length() + header.value().length;
+        }
+        System.out.printf("%nrecord size: json %d bytes + %d bytes of type header, binary %d bytes%n",
+                json.length, headerBytes, binary.length);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return jsonSerializer.serialize(TOPIC, new RecordHeaders(), user);
+    }
+
+    @Benchmark
+    public User jsonDecode() {
+        return jsonDeserializer.deserialize(TOPIC, jsonHeaders, json);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return binarySerializer.serialize(TOPIC, user);
+    }
+
+    @Benchmark
+    public User binaryDecode() {
+        return binaryDeserializer.deserialize(TOPIC, binary);
+    }
+}
@@ -0,0 +1,90 @@
+package com.eltosevenz.kafka.config;
+
+import com.eltosevenz.kafka.service.KafkaConsumerService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    // Same consumer settings as the default factory (spring.kafka.consumer.*), but hands each poll
+    // to the listener as one List; spring.kafka.consumer.max-poll-records caps the batch size
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer, ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        return factory;
+    }
+
+    // For listeners that hand records to other threads and acknowledge them when done, in any order.
+    // With asyncAcks the container only commits up to the highest contiguous acknowledged offset and
+    // pauses the consumer until every record of the previous poll has been acknowledged.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> parallelFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer, ConsumerFactory<Object, Object> consumerFactory,
+            ObjectProvider<KafkaConsumerService> consumerService) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                consumerService.getObject().awaitParallelWork();
+            }
+        });
+        return factory;
+    }
+
+    // Publishes failed records to the retry tiers and demo-topic-dlt. Records that could not be deserialized
+    // are forwarded with their original bytes, everything else as JSON like the producer.
+    // kafka.retry.records counts the records sent to each tier.
+    // Declared as KafkaOperations: a KafkaTemplate bean would switch off Boot's default template used by the producer.
+    @Bean
+    public KafkaOperations<Object, Object> retryKafkaTemplate(KafkaProperties kafkaProperties, MeterRegistry meterRegistry) {
+        Map<Class<?>, Serializer<?>> keySerializers = new LinkedHashMap<>();
+        keySerializers.put(byte[].class, new ByteArraySerializer());
+        keySerializers.put(String.class, new StringSerializer());
+        Map<Class<?>, Serializer<?>> valueSerializers = new LinkedHashMap<>();
+        valueSerializers.put(byte[].class, new ByteArraySerializer());
+        valueSerializers.put(Object.class, new JsonSerializer<>());
+        DefaultKafkaProducerFactory<Object, Object> producerFactory = new DefaultKafkaProducerFactory<>(
+                kafkaProperties.buildProducerProperties(null),
+                new DelegatingByTypeSerializer(keySerializers), new DelegatingByTypeSerializer(valueSerializers, true));
+        KafkaTemplate<Object, Object> template = new KafkaTemplate<>(producerFactory);
+        template.setProducerListener(new ProducerListener<>() {
+            @Override
+            public void onSuccess(ProducerRecord<Object, Object> record, RecordMetadata metadata) {
+                meterRegistry.counter("kafka.retry.records", "topic", record.topic()).increment();
+            }
+        });
+        return template;
+    }
+}
@@ -0,0 +1,80 @@
+package com.eltosevenz.kafka.config;
+
+import com.eltosevenz.kafka.payload.User;
+import com.eltosevenz.kafka.serializer.UserBinaryDeserializer;
+import com.eltosevenz.kafka.serializer.UserBinarySerializer;
+import com.eltosevenz.kafka.service.UserStatsService;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.*;
+import org.apache.kafka.streams.state.WindowStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+
+import java.time.Duration;
+
+// Running aggregates over the demo-topic User stream, in tumbling windows of kafka.streams.window-size-ms.
+// Each aggregate lives in a local RocksDB window store under spring.kafka.streams.state-dir, backed by a
+// compacted changelog topic (<application-id>-<store>-changelog) it is restored from when the local copy is lost.
+// UserStatsService answers queries from these stores.
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnProperty(name = "kafka.streams.enabled", havingValue = "true")
+public class KafkaStreamsConfig {
+
+    @Value("${kafka.streams.window-size-ms:60000}")
+    private long windowSizeMs;
+
+    // How long a window still accepts late records
+    @Value("${kafka.streams.grace-ms:10000}")
+    private long graceMs;
+
+    // How long closed windows stay queryable
+    @Value("${kafka.streams.retention-ms:86400000}")
+    private long retentionMs;
+
+    @Bean
+    public KStream<String, User> userStatsStream(StreamsBuilder builder) {
+        // Reads binary and JSON values; anything else is skipped by the deserialization exception handler
+        Serde<User> userSerde = Serdes.serdeFrom(new UserBinarySerializer(), new UserBinaryDeserializer());
+        TimeWindows windows = TimeWindows.ofSizeAndGrace(Duration.ofMillis(windowSizeMs), Duration.ofMillis(graceMs));
+        Duration retention = Duration.ofMillis(Math.max(retentionMs, windowSizeMs + graceMs));
+
+        KStream<String, User> users = builder.stream("demo-topic", Consumed.with(Serdes.String(), userSerde))
+                .filter((key, user) -> user != null);
+
+        // Users per last name
+        users.filter((key, user) -> user.getLastName() != null)
+                .groupBy((key, user) -> user.getLastName(), Grouped.with("by-last-name", Serdes.String(), userSerde))
+                .windowedBy(windows)
+                .count(Materialized.<String, Long, WindowStore<Bytes, byte[]>>as(UserStatsService.LAST_NAME_COUNTS)
+                        .withRetention(retention));
+
+        // Distinct ids: the first record of an id in a window is counted, repeats are not. Caching is off on the
+        // per-id store so the update with count 1 is never merged away.
+        users.groupBy((key, user) -> user.getId(), Grouped.with("by-id", Serdes.Integer(), userSerde))
+                .windowedBy(windows)
+                .count(Materialized.<Integer, Long, WindowStore<Bytes, byte[]>>as(UserStatsService.ID_COUNTS)
+                        .withRetention(retention)
+                        .withCachingDisabled())
+                .toStream()
+                .filter((id, count) -> count == 1)
+                .groupBy((id, count) -> UserStatsService.ALL_IDS, Grouped.with("first-seen", Serdes.String(), Serdes.Long()))
+                .windowedBy(windows)
+                .count(Materialized.<String, Long, WindowStore<Bytes, byte[]>>as(UserStatsService.DISTINCT_IDS)
+                        .withRetention(retention));
+        return users;
+    }
+
+    @Bean
+    public KafkaStreamsInteractiveQueryService kafkaStreamsInteractiveQueryService(StreamsBuilderFactoryBean streamsBuilderFactoryBean) {
+        return new KafkaStreamsInteractiveQueryService(streamsBuilderFactoryBean);
+    }
+}
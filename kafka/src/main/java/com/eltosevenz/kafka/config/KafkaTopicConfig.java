@@ -1,15 +1,43 @@
 package com.eltosevenz.kafka.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class KafkaTopicConfig {
 
+    // Partitions bound how many consumers of one group can read in parallel,
+    // the listeners use the same number for their concurrency
+    @Value("${kafka.topic.partitions:1}")
+    private int partitions;
+
+    @Value("${kafka.topic.replication-factor:1}")
+    private short replicationFactor;
+
+    // Main delivery plus retries, see the record listener in KafkaConsumerService
+    @Value("${kafka.retry.attempts:4}")
+    private int retryAttempts;
+
     @Bean
     public NewTopic createTopic() {
-        return new NewTopic("demo-topic", 1, (short) 1); // topic name, partitions, replication factor
+        return new NewTopic("demo-topic", partitions, replicationFactor); // topic name, partitions, replication factor
     }
-}
 
+    // One retry topic per tier (demo-topic-retry-0, -1, ...) and the dead-letter topic demo-topic-dlt.
+    // Same partition count as demo-topic, so a failed record keeps its partition on the way through.
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics() {
+        List<NewTopic> topics = new ArrayList<>();
+        for (int tier = 0; tier < retryAttempts - 1; tier++) {
+            topics.add(new NewTopic("demo-topic-retry-" + tier, partitions, replicationFactor));
+        }
+        topics.add(new NewTopic("demo-topic-dlt", partitions, replicationFactor));
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
+}
@@ -1,17 +1,26 @@
 package com.eltosevenz.kafka.controller;
 
+import com.eltosevenz.kafka.payload.BulkPublishReport;
 import com.eltosevenz.kafka.payload.User;
+import com.eltosevenz.kafka.service.BulkPublishService;
 import com.eltosevenz.kafka.service.KafkaProducerService;
+import com.eltosevenz.kafka.service.ProducerStats;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/kafka")
 public class KafkaController {
 
     private final KafkaProducerService kafkaProducerService;
 
-    public KafkaController(KafkaProducerService kafkaProducerService) {
+    private final BulkPublishService bulkPublishService;
+
+    public KafkaController(KafkaProducerService kafkaProducerService, BulkPublishService bulkPublishService) {
         this.kafkaProducerService = kafkaProducerService;
+        this.bulkPublishService = bulkPublishService;
     }
 
     @PostMapping("/publish_text")
@@ -25,5 +34,16 @@ public class KafkaController {
         kafkaProducerService.sendJsonMessage(user);
         return "Message published: " + user;
     }
-}
 
+    // NDJSON body, one User per line, streamed into the producer. Answers once every record is acked or failed.
+    @PostMapping("/publish_json/bulk")
+    public BulkPublishReport sendMessagesJson(InputStream body) throws IOException, InterruptedException {
+        return bulkPublishService.publishJson(body);
+    }
+
+    // Acked, failed and rejected sends, in-flight count and ack latency since startup
+    @GetMapping("/producer/stats")
+    public ProducerStats producerStats() {
+        return kafkaProducerService.getStats();
+    }
+}
@@ -0,0 +1,55 @@
+package com.eltosevenz.kafka.controller;
+
+import com.eltosevenz.kafka.payload.WindowCount;
+import com.eltosevenz.kafka.service.UserStatsService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Windowed User aggregates from the local state stores. from/to select windows by start time
+// (ISO-8601, e.g. 2024-05-01T10:00:00Z) and default to the last hour.
+@RestController
+@RequestMapping("/api/kafka/stats")
+@ConditionalOnProperty(name = "kafka.streams.enabled", havingValue = "true")
+public class UserStatsController {
+
+    private final UserStatsService userStatsService;
+
+    public UserStatsController(UserStatsService userStatsService) {
+        this.userStatsService = userStatsService;
+    }
+
+    @GetMapping("/last-names")
+    public Map<String, List<WindowCount>> lastNameCounts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return userStatsService.lastNameCounts(from(from, to), to(to));
+    }
+
+    @GetMapping("/last-names/{lastName}")
+    public List<WindowCount> lastNameCounts(@PathVariable String lastName,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return userStatsService.lastNameCounts(lastName, from(from, to), to(to));
+    }
+
+    @GetMapping("/distinct-ids")
+    public List<WindowCount> distinctIds(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return userStatsService.distinctIds(from(from, to), to(to));
+    }
+
+    private static Instant to(Instant to) {
+        return to != null ? to : Instant.now();
+    }
+
+    private static Instant from(Instant from, Instant to) {
+        return from != null ? from : to(to).minus(Duration.ofHours(1));
+    }
+}
@@ -0,0 +1,12 @@
+package com.eltosevenz.kafka.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Too many sends waiting for a broker acknowledgement, the client should retry later
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ProducerBackpressureException extends RuntimeException {
+    public ProducerBackpressureException(String message) {
+        super(message);
+    }
+}
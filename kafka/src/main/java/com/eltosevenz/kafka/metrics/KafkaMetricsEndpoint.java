@@ -0,0 +1,169 @@
+package com.eltosevenz.kafka.metrics;
+
+import com.eltosevenz.kafka.payload.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+//GET /actuator/kafka: one-page view of the record flow. Consumer rates and lag are read straight from the
+//running Kafka clients (the kafka.consumer.* meters only pick up new topics and partitions once a minute),
+//handler and send latencies from the Micrometer timers.
+@Component
+@Endpoint(id = "kafka")
+public class KafkaMetricsEndpoint {
+
+    private static final String FETCH_GROUP = "consumer-fetch-manager-metrics";
+    private static final String PRODUCER_GROUP = "producer-metrics";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private KafkaTemplate<String, User> kafkaTemplateJson;
+
+    @ReadOperation
+    public Map<String, Object> kafka() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("listeners", listeners());
+        result.put("topics", topics());
+        result.put("lag", lag());
+        result.put("handlers", timers("kafka.consumer.handler", "listener"));
+        result.put("producer", producer());
+        result.put("retries", retries());
+        return result;
+    }
+
+    // Whether each listener container is consuming, e.g. demo-topic-parallel stops when it cannot dead-letter a record
+    private Map<String, String> listeners() {
+        Map<String, String> listeners = new TreeMap<>();
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            listeners.put(container.getListenerId(), container.isRunning() ? "running" : "stopped");
+        }
+        return listeners;
+    }
+
+    // Records/s and bytes/s per topic, summed over the consumers of every running listener
+    private Map<String, Map<String, Double>> topics() {
+        Map<String, Map<String, Double>> topics = new TreeMap<>();
+        forEachConsumerMetric((name, value) -> {
+            String topic = name.tags().get("topic");
+            if (topic == null || name.tags().containsKey("partition")) {
+                return;
+            }
+            String key = switch (name.name()) {
+                case "records-consumed-rate" -> "recordsPerSec";
+                case "bytes-consumed-rate" -> "bytesPerSec";
+                default -> null;
+            };
+            if (key != null) {
+                topics.computeIfAbsent(topic, t -> new TreeMap<>()).merge(key, round(value), Double::sum);
+            }
+        });
+        return topics;
+    }
+
+    // Records between the consumer position and the end of each assigned partition ("topic-partition" -> lag)
+    private Map<String, Long> lag() {
+        Map<String, Long> lag = new TreeMap<>();
+        forEachConsumerMetric((name, value) -> {
+            if (name.name().equals("records-lag") && name.tags().containsKey("partition") && !Double.isNaN(value)) {
+                lag.put(name.tags().get("topic") + "-" + name.tags().get("partition"), (long) value);
+            }
+        });
+        return lag;
+    }
+
+    private void forEachConsumerMetric(MetricConsumer action) {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (!container.isRunning()) {
+                continue;
+            }
+            for (Map<MetricName, ? extends Metric> clientMetrics : container.metrics().values()) {
+                clientMetrics.forEach((name, metric) -> {
+                    if (FETCH_GROUP.equals(name.group()) && metric.metricValue() instanceof Double value) {
+                        action.accept(name, value);
+                    }
+                });
+            }
+        }
+    }
+
+    private interface MetricConsumer {
+        void accept(MetricName name, double value);
+    }
+
+    private Map<String, Object> producer() {
+        Map<String, Object> producer = new LinkedHashMap<>();
+        producer.put("send", timers("kafka.producer.send", "outcome"));
+        Counter rejected = meterRegistry.find("kafka.producer.rejected").counter();
+        producer.put("rejected", rejected == null ? 0 : (long) rejected.count());
+        Gauge inFlight = meterRegistry.find("kafka.producer.in-flight").gauge();
+        producer.put("inFlight", inFlight == null ? 0 : (long) inFlight.value());
+        // Client side view: records/s and errors/s after the client's own retries, broker request latency
+        for (Map.Entry<MetricName, ? extends Metric> entry : kafkaTemplateJson.metrics().entrySet()) {
+            MetricName name = entry.getKey();
+            if (PRODUCER_GROUP.equals(name.group()) && entry.getValue().metricValue() instanceof Double value) {
+                switch (name.name()) {
+                    case "record-send-rate" -> producer.put("recordsPerSec", round(value));
+                    case "record-error-rate" -> producer.put("errorsPerSec", round(value));
+                    case "request-latency-avg" -> producer.put("requestLatencyAvgMs", round(value));
+                    default -> {
+                    }
+                }
+            }
+        }
+        return producer;
+    }
+
+    private Map<String, Long> retries() {
+        Map<String, Long> retries = new TreeMap<>();
+        for (Counter counter : meterRegistry.find("kafka.retry.records").counters()) {
+            retries.put(counter.getId().getTag("topic"), (long) counter.count());
+        }
+        return retries;
+    }
+
+    private Map<String, Object> timers(String name, String keyTag) {
+        Map<String, Object> rows = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(name).timers()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("count", timer.count());
+            row.put("meanMs", round(timer.mean(TimeUnit.MILLISECONDS)));
+            row.put("maxMs", round(timer.max(TimeUnit.MILLISECONDS)));
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+                percentiles.put("p" + percentileLabel(value.percentile()), round(value.value(TimeUnit.MILLISECONDS)));
+            }
+            row.put("percentilesMs", percentiles);
+            rows.put(timer.getId().getTag(keyTag), row);
+        }
+        return rows;
+    }
+
+    // 0.5 -> "50", 0.999 -> "99.9"
+    private static String percentileLabel(double percentile) {
+        return BigDecimal.valueOf(percentile * 100).stripTrailingZeros().toPlainString();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.eltosevenz.kafka.payload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Result of a /api/kafka/publish_json/bulk request. Lines are numbered from 1, blank lines are skipped.
+// sent = acked + failed + pending. Errors of invalid and failed lines share one list of at most maxErrors
+// entries; the counters are always complete.
+// Sends complete on producer threads, hence the synchronized updates.
+public class BulkPublishReport {
+
+    public record LineError(long line, String message) {
+    }
+
+    private long lines;
+    private long sent;
+    private long acked;
+    private long failed;
+    private long invalid;
+    private long elapsedMs;
+    private Long abortedAtLine;
+    private String abortReason;
+    private boolean errorsTruncated;
+    private final List<LineError> errors = new ArrayList<>();
+    private final int maxErrors;
+
+    public BulkPublishReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public synchronized void lineRead() {
+        lines++;
+    }
+
+    public synchronized void sent() {
+        sent++;
+    }
+
+    public synchronized void acked() {
+        acked++;
+        notifyAll();
+    }
+
+    public synchronized void failed(long line, String message) {
+        failed++;
+        addError(line, message);
+        notifyAll();
+    }
+
+    public synchronized void invalid(long line, String message) {
+        invalid++;
+        addError(line, message);
+    }
+
+    // Lines from this one on were not read; the client can resend them once the broker catches up
+    public synchronized void abort(long line, String reason) {
+        abortedAtLine = line;
+        abortReason = reason;
+    }
+
+    // Waits until every sent record was acked or failed; false if some are still pending at the timeout
+    public synchronized boolean awaitCompletion(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (getPending() > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public synchronized void finish(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    private void addError(long line, String message) {
+        if (errors.size() < maxErrors) {
+            errors.add(new LineError(line, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    public synchronized long getAcked() {
+        return acked;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized long getInvalid() {
+        return invalid;
+    }
+
+    public synchronized long getPending() {
+        return sent - acked - failed;
+    }
+
+    public synchronized long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public synchronized Long getAbortedAtLine() {
+        return abortedAtLine;
+    }
+
+    public synchronized String getAbortReason() {
+        return abortReason;
+    }
+
+    public synchronized boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public synchronized List<LineError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+}
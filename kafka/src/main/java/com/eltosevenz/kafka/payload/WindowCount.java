@@ -0,0 +1,7 @@
+package com.eltosevenz.kafka.payload;
+
+import java.time.Instant;
+
+// One window of a streaming aggregate, [start, end)
+public record WindowCount(Instant start, Instant end, long count) {
+}
@@ -0,0 +1,29 @@
+package com.eltosevenz.kafka.serializer;
+
+import com.eltosevenz.kafka.payload.User;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+//Reads both binary and JSON User records, so a topic can be switched to binary while JSON records are still in it.
+//The first byte decides: a version byte means binary, anything else is parsed as JSON into User
+//(type headers are ignored, so no trusted packages are needed).
+public class UserBinaryDeserializer implements Deserializer<User> {
+
+    private final JsonDeserializer<User> json = new JsonDeserializer<>(User.class, false);
+
+    @Override
+    public User deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (UserBinaryFormat.isBinary(data)) {
+            return UserBinaryFormat.decode(data);
+        }
+        return json.deserialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
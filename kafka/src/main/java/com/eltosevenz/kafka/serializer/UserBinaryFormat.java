@@ -0,0 +1,132 @@
+package com.eltosevenz.kafka.serializer;
+
+import com.eltosevenz.kafka.payload.User;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+//Wire format of a binary User record, version 1:
+//  byte    version (0x01)
+//  varint  id (zig-zag)
+//  string  firstName
+//  string  lastName
+//A string is a varint of (UTF-8 length + 1) followed by the bytes, 0 meaning null.
+//Versions use 0x01-0x08: JSON text never starts with one of these (whitespace is 0x09 and up), so one byte tells the formats apart.
+final class UserBinaryFormat {
+
+    static final byte VERSION_1 = 0x01;
+    static final byte MAX_VERSION_BYTE = 0x08;
+
+    private UserBinaryFormat() {
+    }
+
+    static byte[] encode(User user) {
+        byte[] firstName = utf8(user.getFirstName());
+        byte[] lastName = utf8(user.getLastName());
+        int id = zigZag(user.getId());
+        byte[] out = new byte[1 + varintSize(id) + stringSize(firstName) + stringSize(lastName)];
+        out[0] = VERSION_1;
+        int pos = writeVarint(out, 1, id);
+        pos = writeString(out, pos, firstName);
+        writeString(out, pos, lastName);
+        return out;
+    }
+
+    static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] >= 0 && data[0] <= MAX_VERSION_BYTE;
+    }
+
+    static User decode(byte[] data) {
+        if (data[0] != VERSION_1) {
+            throw new SerializationException("Unsupported User encoding version " + data[0]);
+        }
+        Reader reader = new Reader(data, 1);
+        User user = new User();
+        int zigZag = reader.varint();
+        user.setId((zigZag >>> 1) ^ -(zigZag & 1));
+        user.setFirstName(reader.string());
+        user.setLastName(reader.string());
+        return user;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return bytes == null ? 1 : varintSize(bytes.length + 1) + bytes.length;
+    }
+
+    private static int writeVarint(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int writeString(byte[] out, int pos, byte[] bytes) {
+        if (bytes == null) {
+            return writeVarint(out, pos, 0);
+        }
+        pos = writeVarint(out, pos, bytes.length + 1);
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = next();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in User record");
+        }
+
+        String string() {
+            int length = varint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > data.length - pos) {
+                throw new SerializationException("Truncated User record");
+            }
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private byte next() {
+            if (pos >= data.length) {
+                throw new SerializationException("Truncated User record");
+            }
+            return data[pos++];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.eltosevenz.kafka.serializer;
+
+import com.eltosevenz.kafka.payload.User;
+import org.apache.kafka.common.serialization.Serializer;
+
+// Writes User records in the binary format (see UserBinaryFormat), no field names and no type headers
+public class UserBinarySerializer implements Serializer<User> {
+
+    @Override
+    public byte[] serialize(String topic, User user) {
+        return user == null ? null : UserBinaryFormat.encode(user);
+    }
+}
@@ -0,0 +1,94 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.exception.ProducerBackpressureException;
+import com.eltosevenz.kafka.payload.BulkPublishReport;
+import com.eltosevenz.kafka.payload.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+//Streams an NDJSON body (one User per line) into KafkaProducerService.
+//Nothing is buffered per record: a line is parsed, handed to the producer and dropped. When the producer's
+//in-flight limit is reached the send waits, so reading the body (and the client's upload) slows down with it.
+//If no slot frees up within kafka.producer.in-flight-wait-ms the request stops reading and reports the line.
+@Service
+public class BulkPublishService {
+
+    @Autowired
+    private KafkaProducerService kafkaProducerService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${kafka.producer.bulk.max-errors:100}")
+    private int maxErrors;
+
+    @Value("${kafka.producer.bulk.completion-timeout-ms:120000}")
+    private long completionTimeoutMs;
+
+    private ObjectReader userReader;
+
+    @PostConstruct
+    void init() {
+        userReader = objectMapper.readerFor(User.class);
+    }
+
+    public BulkPublishReport publishJson(InputStream body) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BulkPublishReport report = new BulkPublishReport(maxErrors);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+
+        long lineNo = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) {
+                continue;
+            }
+            report.lineRead();
+            User user;
+            try {
+                user = userReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                report.invalid(lineNo, e.getOriginalMessage());
+                continue;
+            }
+            long sentLine = lineNo;
+            CompletableFuture<?> ack;
+            try {
+                ack = kafkaProducerService.sendJsonMessage(user);
+            } catch (ProducerBackpressureException e) {
+                report.abort(lineNo, e.getMessage());
+                break;
+            } catch (RuntimeException e) {
+                report.sent();
+                report.failed(lineNo, e.getMessage());
+                continue;
+            }
+            report.sent();
+            ack.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    report.acked();
+                } else {
+                    report.failed(sentLine, ex.getMessage());
+                }
+            });
+        }
+
+        // The summary counts acks, so wait for the sends still in flight (bounded by delivery.timeout.ms)
+        report.awaitCompletion(completionTimeoutMs);
+        report.finish((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+}
@@ -1,20 +1,266 @@
 package com.eltosevenz.kafka.service;
 
 import com.eltosevenz.kafka.payload.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.retrytopic.DltStrategy;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Service
 public class KafkaConsumerService {
 
+    private static final Logger log = LoggerFactory.getLogger(KafkaConsumerService.class);
+
+    private static final String PARALLEL_LISTENER = "demo-topic-parallel";
+
+    private static final long MAX_DLT_BACKOFF_MS = 30_000;
+
+    @Value("${kafka.consumer.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${kafka.consumer.parallel.workers:0}")
+    private int parallelWorkers;
+
+    @Value("${kafka.consumer.parallel.drain-timeout-ms:10000}")
+    private long parallelDrainTimeoutMs;
+
+    @Value("${kafka.consumer.parallel.dlt-attempts:5}")
+    private int dltAttempts;
+
+    @Value("${kafka.consumer.parallel.dlt-backoff-ms:500}")
+    private long dltBackoffMs;
+
+    @Value("${kafka.consumer.log.sample-every:1000}")
+    private long logSampleEvery;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("retryKafkaTemplate")
+    private KafkaOperations<Object, Object> retryKafkaTemplate;
+
+    @Autowired(required = false)
+    private UserHandler userHandler;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    private KeyOrderedExecutor workers;
+    private DeadLetterPublishingRecoverer parallelDeadLetters;
+    private SampledLogger received;
+    private Timer recordHandler;
+    private Timer batchHandler;
+    private Timer parallelHandler;
+
+    @PostConstruct
+    void init() {
+        received = new SampledLogger(log, logSampleEvery);
+        recordHandler = handlerTimer("demo-topic-record");
+        batchHandler = handlerTimer("demo-topic-batch");
+        parallelHandler = handlerTimer("demo-topic-parallel");
+        if (parallelEnabled) {
+            int lanes = parallelWorkers > 0 ? parallelWorkers : Runtime.getRuntime().availableProcessors();
+            workers = new KeyOrderedExecutor(lanes, "demo-topic-worker-");
+            // The retry tiers belong to the record listener and are not consumed in parallel mode,
+            // so failed records go straight to the dead-letter topic, same partition
+            parallelDeadLetters = new DeadLetterPublishingRecoverer(retryKafkaTemplate,
+                    (record, e) -> new TopicPartition("demo-topic-dlt", record.partition()));
+        }
+    }
+
+    // Listener containers are stopped before this runs; records still queued are not acknowledged
+    // and are delivered again after the restart
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (workers != null) {
+            workers.shutdown(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // Called by parallelFactory when partitions are revoked, before the container commits: lets the records
+    // already handed to the workers finish, so their offsets are committed instead of being redelivered
+    // to the next owner of the partition
+    public void awaitParallelWork() {
+        if (workers == null) {
+            return;
+        }
+        try {
+            workers.awaitQueued(parallelDrainTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Workers still busy after {} ms, unfinished records will be redelivered", parallelDrainTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @KafkaListener(topics = "demo-topic1", groupId = "demo-group")
     public void listen(String message) {
-        System.out.println("Received message: " + message);
+        received.log("Received message: {}", message);
     }
 
-    @KafkaListener(topics = "demo-topic", groupId = "demo-group")
+    // Record mode (default): one call per message.
+    // The demo-topic listeners run one consumer per partition and only one of them is started.
+    // A record that fails is not retried in place, which would hold up its partition: it is committed and
+    // published to demo-topic-retry-0, then -retry-1, ... each tier read after a longer delay
+    // (kafka.retry.delay-ms times kafka.retry.multiplier per tier), and finally to demo-topic-dlt.
+    // Records that cannot be deserialized go straight to demo-topic-dlt.
+    @RetryableTopic(attempts = "${kafka.retry.attempts:4}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.delay-ms:1000}",
+                    multiplierExpression = "${kafka.retry.multiplier:5}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            dltTopicSuffix = "-dlt",
+            dltStrategy = DltStrategy.FAIL_ON_ERROR,
+            autoCreateTopics = "false",
+            kafkaTemplate = "retryKafkaTemplate")
+    @KafkaListener(id = "demo-topic-record", topics = "demo-topic", groupId = "demo-group",
+            concurrency = "${kafka.topic.partitions:1}",
+            autoStartup = "#{!${kafka.consumer.batch.enabled:false} and !${kafka.consumer.parallel.enabled:false}}")
     public void listen(User message) {
-        System.out.println("Received json message: " + message);
+        received.log("Received json message: {}", message);
+        handle(message, recordHandler);
+    }
+
+    @DltHandler
+    public void listenDlt(ConsumerRecord<String, User> record,
+                          @Header(name = KafkaHeaders.EXCEPTION_MESSAGE, required = false) String error) {
+        log.error("Giving up on {} from {}: {}", record.value(), record.topic(), error);
+    }
+
+    // Batch mode (kafka.consumer.batch.enabled=true): one call per poll, up to max-poll-records messages
+    @KafkaListener(id = "demo-topic-batch", topics = "demo-topic", groupId = "demo-group",
+            containerFactory = "batchFactory",
+            concurrency = "${kafka.topic.partitions:1}",
+            autoStartup = "${kafka.consumer.batch.enabled:false}")
+    public void listenBatch(List<ConsumerRecord<String, User>> records) {
+        for (ConsumerRecord<String, User> record : records) {
+            handle(record.value(), batchHandler);
+        }
+        ConsumerRecord<String, User> first = records.get(0);
+        received.log("Received json batch: {} messages from partition {} offset {}",
+                records.size(), first.partition(), first.offset());
+    }
+
+    // Parallel mode (kafka.consumer.parallel.enabled=true): records of a partition are spread over
+    // kafka.consumer.parallel.workers lanes by key (the record key, else User.id). Records with the same key
+    // are processed in order, different keys concurrently. Each record is acknowledged when its work is done
+    // and parallelFactory commits only up to the highest contiguous acknowledged offset, so a crash
+    // replays from the first unfinished record (at-least-once).
+    // A record that fails is published to demo-topic-dlt before it is acknowledged. A failed publish is retried
+    // with backoff, holding up the record's lane. If every attempt fails the record cannot be acknowledged, and the
+    // container would sit paused waiting for it, so the container is stopped instead: it shows as stopped in
+    // /actuator/kafka and the record is delivered again after a restart.
+    @KafkaListener(id = PARALLEL_LISTENER, topics = "demo-topic", groupId = "demo-group",
+            containerFactory = "parallelFactory",
+            concurrency = "${kafka.topic.partitions:1}",
+            autoStartup = "${kafka.consumer.parallel.enabled:false}")
+    public void listenParallel(ConsumerRecord<String, User> record, Acknowledgment ack) {
+        workers.submit(orderingKey(record), () -> {
+            try {
+                handle(record.value(), parallelHandler);
+            } catch (RuntimeException e) {
+                log.error("Failed to process partition {} offset {}, sending it to demo-topic-dlt",
+                        record.partition(), record.offset(), e);
+                if (!deadLetter(record, e)) {
+                    return;
+                }
+            }
+            ack.acknowledge();
+        });
+    }
+
+    // Publishes a failed record to demo-topic-dlt, waiting for the broker ack. Backs off from dlt-backoff-ms,
+    // doubling up to MAX_DLT_BACKOFF_MS, for dlt-attempts sends; then stops the parallel container.
+    private boolean deadLetter(ConsumerRecord<String, User> record, Exception failure) {
+        long backoffMs = dltBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                parallelDeadLetters.accept(record, failure);
+                return true;
+            } catch (RuntimeException publishFailure) {
+                if (attempt >= dltAttempts) {
+                    log.error("Could not dead-letter partition {} offset {} after {} attempts, stopping {}: " +
+                                    "the record is delivered again after a restart",
+                            record.partition(), record.offset(), attempt, PARALLEL_LISTENER, publishFailure);
+                    stopParallelContainer();
+                    return false;
+                }
+                log.warn("Could not dead-letter partition {} offset {} (attempt {} of {}), retrying in {} ms",
+                        record.partition(), record.offset(), attempt, dltAttempts, backoffMs, publishFailure);
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                // Shutting down, the unacknowledged record is delivered again after the restart
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_DLT_BACKOFF_MS);
+        }
     }
-}
 
+    // Asynchronous: stop() would wait for the consumer, which waits for this lane when its partitions are revoked
+    private void stopParallelContainer() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(PARALLEL_LISTENER);
+        if (container != null && container.isRunning()) {
+            container.stop(() -> log.error("{} stopped, records from the first unacknowledged one on are not consumed",
+                    PARALLEL_LISTENER));
+        }
+    }
+
+    private static Object orderingKey(ConsumerRecord<String, User> record) {
+        if (record.key() != null) {
+            return record.key();
+        }
+        return record.value() == null ? record.partition() : record.value().getId();
+    }
+
+    // Handler latency per record, whatever the listener mode; kafka.consumer.handler in /actuator/metrics
+    private Timer handlerTimer(String listener) {
+        return Timer.builder("kafka.consumer.handler")
+                .description("Time spent processing one record")
+                .tag("listener", listener)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void handle(User user, Timer timer) {
+        long start = System.nanoTime();
+        try {
+            process(user);
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void process(User user) {
+        if (userHandler != null) {
+            userHandler.handle(user);
+        }
+    }
+}
@@ -1,34 +1,110 @@
 package com.eltosevenz.kafka.service;
 
+import com.eltosevenz.kafka.exception.ProducerBackpressureException;
 import com.eltosevenz.kafka.payload.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Sends are asynchronous: the record goes into the producer's batch for the partition and the call returns.
+//Batching and compression are producer settings (linger.ms, batch-size, compression-type in application.properties).
+//At most kafka.producer.max-in-flight sends may wait for their ack; beyond that a send waits up to
+//kafka.producer.in-flight-wait-ms for a slot and then fails with ProducerBackpressureException (HTTP 503).
 @Service
 public class KafkaProducerService {
 
+    private static final Logger log = LoggerFactory.getLogger(KafkaProducerService.class);
+
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
 
     @Autowired
     private  KafkaTemplate<String, User> kafkaTemplateJson;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${kafka.producer.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${kafka.producer.in-flight-wait-ms:1000}")
+    private long inFlightWaitMs;
+
+    private Semaphore inFlight;
+    private ProducerStats stats;
+
+    @PostConstruct
+    void init() {
+        inFlight = new Semaphore(maxInFlight);
+        stats = new ProducerStats(meterRegistry, () -> maxInFlight - inFlight.availablePermits());
+    }
+
     public void sendMessage(String message) {
-        kafkaTemplate.send("demo-topic", message);
-        System.out.println("Message sent: " + message);
+        send(() -> kafkaTemplate.send("demo-topic", message));
+        log.debug("Message sent: {}", message);
     }
 
-    public void sendJsonMessage(User data) {
+    // Completes once the broker acked the record (or the send failed) and the stats are updated
+    public CompletableFuture<?> sendJsonMessage(User data) {
         Message<User> message = MessageBuilder
                 .withPayload(data)
                 .setHeader(KafkaHeaders.TOPIC,"demo-topic")
                 .build();
-        kafkaTemplateJson.send(message);
-        System.out.println("JSON Message sent: " + message);
+        CompletableFuture<?> result = send(() -> kafkaTemplateJson.send(message));
+        log.debug("JSON Message sent: {}", message);
+        return result;
+    }
+
+    public ProducerStats getStats() {
+        return stats;
     }
-}
 
+    private CompletableFuture<?> send(Supplier<? extends CompletableFuture<? extends SendResult<?, ?>>> send) {
+        acquireSlot();
+        long start = System.nanoTime();
+        CompletableFuture<? extends SendResult<?, ?>> future;
+        try {
+            future = send.get();
+        } catch (RuntimeException e) {
+            // e.g. serialization failure or max.block.ms exceeded, nothing is in flight
+            inFlight.release();
+            stats.failed(System.nanoTime() - start);
+            throw e;
+        }
+        return future.whenComplete((result, ex) -> {
+            inFlight.release();
+            if (ex == null) {
+                stats.acked(System.nanoTime() - start);
+            } else {
+                stats.failed(System.nanoTime() - start);
+                log.warn("Send to demo-topic failed", ex);
+            }
+        });
+    }
+
+    private void acquireSlot() {
+        try {
+            if (inFlight.tryAcquire(inFlightWaitMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stats.rejected();
+        throw new ProducerBackpressureException("Too many messages waiting for the broker, try again later");
+    }
+}
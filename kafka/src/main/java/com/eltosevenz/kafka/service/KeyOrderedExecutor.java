@@ -0,0 +1,54 @@
+package com.eltosevenz.kafka.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Fixed set of single-threaded lanes; all tasks for the same key run on the same lane, in submission order.
+// Different keys spread over the lanes and run in parallel.
+class KeyOrderedExecutor {
+
+    private final ExecutorService[] lanes;
+
+    KeyOrderedExecutor(int lanes, String threadPrefix) {
+        this.lanes = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            String name = threadPrefix + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    void submit(Object key, Runnable task) {
+        lanes[Math.floorMod(key.hashCode(), lanes.length)].execute(task);
+    }
+
+    // Waits until every task submitted so far has run
+    void awaitQueued(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        List<Future<?>> barriers = new ArrayList<>();
+        for (ExecutorService lane : lanes) {
+            barriers.add(lane.submit(() -> { }));
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> barrier : barriers) {
+            try {
+                barrier.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.eltosevenz.kafka.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+// Meters filled by the send callbacks of KafkaProducerService, latency = send() to broker ack.
+// kafka.producer.send (outcome acked/failed), kafka.producer.rejected and kafka.producer.in-flight in /actuator/metrics;
+// this class is the summary behind GET /api/kafka/producer/stats.
+public class ProducerStats {
+
+    private final Timer acked;
+    private final Timer failed;
+    private final Counter rejected;
+    private final InFlight inFlight;
+
+    interface InFlight {
+        int current();
+    }
+
+    ProducerStats(MeterRegistry meterRegistry, InFlight inFlight) {
+        this.acked = sendTimer(meterRegistry, "acked");
+        this.failed = sendTimer(meterRegistry, "failed");
+        this.rejected = Counter.builder("kafka.producer.rejected")
+                .description("Sends refused by the in-flight limit")
+                .register(meterRegistry);
+        this.inFlight = inFlight;
+        Gauge.builder("kafka.producer.in-flight", inFlight, InFlight::current)
+                .description("Sends waiting for the broker ack")
+                .register(meterRegistry);
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("kafka.producer.send")
+                .description("Time from send() to the broker ack or the failure")
+                .tag("topic", "demo-topic")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    void acked(long nanos) {
+        acked.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void failed(long nanos) {
+        failed.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    public long getAcked() {
+        return acked.count();
+    }
+
+    public long getFailed() {
+        return failed.count();
+    }
+
+    // Sends refused by the in-flight limit (HTTP 503)
+    public long getRejected() {
+        return (long) rejected.count();
+    }
+
+    public int getInFlight() {
+        return inFlight.current();
+    }
+
+    public double getMeanLatencyMs() {
+        return acked.mean(TimeUnit.MILLISECONDS);
+    }
+
+    // Largest ack latency of the last couple of minutes (Micrometer's decaying max)
+    public double getMaxLatencyMs() {
+        return acked.max(TimeUnit.MILLISECONDS);
+    }
+}
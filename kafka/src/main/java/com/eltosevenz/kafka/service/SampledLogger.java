@@ -0,0 +1,35 @@
+package com.eltosevenz.kafka.service;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-record logging that does not cost throughput: every call at DEBUG, otherwise only one call in
+// `every` at INFO (0 = never). Appenders are asynchronous, see logback-spring.xml.
+class SampledLogger {
+
+    private final Logger log;
+    private final long every;
+    private final AtomicLong calls = new AtomicLong();
+
+    SampledLogger(Logger log, long every) {
+        this.log = log;
+        this.every = every;
+    }
+
+    void log(String format, Object... args) {
+        long call = calls.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug(format, args);
+        } else if (every > 0 && call % every == 1 % every) {
+            log.info(format + " [call {}, 1 in {} logged]", append(args, call, every));
+        }
+    }
+
+    private static Object[] append(Object[] args, Object... more) {
+        Object[] all = new Object[args.length + more.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(more, 0, all, args.length, more.length);
+        return all;
+    }
+}
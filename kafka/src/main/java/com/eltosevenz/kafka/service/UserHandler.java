@@ -0,0 +1,11 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.payload.User;
+
+// Per-record work of the demo-topic listeners, whatever the listener mode. Optional: without a bean of this
+// type the listeners only count and log. A handler that throws sends the record to the retry tiers
+// (record mode) or to demo-topic-dlt (parallel mode).
+public interface UserHandler {
+
+    void handle(User user);
+}
@@ -0,0 +1,78 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.payload.WindowCount;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Interactive queries on the window stores built in KafkaStreamsConfig. Answers come from the local stores,
+// so they cover the demo-topic partitions this instance processes (all of them when it runs alone).
+// Windows are selected by their start time, from and to inclusive.
+@Service
+@ConditionalOnProperty(name = "kafka.streams.enabled", havingValue = "true")
+public class UserStatsService {
+
+    public static final String LAST_NAME_COUNTS = "last-name-counts";
+    public static final String ID_COUNTS = "id-counts";
+    public static final String DISTINCT_IDS = "distinct-ids";
+    // Single key of the distinct-ids store
+    public static final String ALL_IDS = "all";
+
+    @Autowired
+    private KafkaStreamsInteractiveQueryService queryService;
+
+    @Value("${kafka.streams.window-size-ms:60000}")
+    private long windowSizeMs;
+
+    public List<WindowCount> lastNameCounts(String lastName, Instant from, Instant to) {
+        return fetch(LAST_NAME_COUNTS, lastName, from, to);
+    }
+
+    public Map<String, List<WindowCount>> lastNameCounts(Instant from, Instant to) {
+        Map<String, List<WindowCount>> counts = new TreeMap<>();
+        try (KeyValueIterator<Windowed<String>, Long> it = store(LAST_NAME_COUNTS).fetchAll(from, to)) {
+            while (it.hasNext()) {
+                KeyValue<Windowed<String>, Long> entry = it.next();
+                counts.computeIfAbsent(entry.key.key(), k -> new ArrayList<>()).add(new WindowCount(
+                        entry.key.window().startTime(), entry.key.window().endTime(), entry.value));
+            }
+        }
+        return counts;
+    }
+
+    public List<WindowCount> distinctIds(Instant from, Instant to) {
+        return fetch(DISTINCT_IDS, ALL_IDS, from, to);
+    }
+
+    private List<WindowCount> fetch(String storeName, String key, Instant from, Instant to) {
+        ReadOnlyWindowStore<String, Long> store = store(storeName);
+        List<WindowCount> counts = new ArrayList<>();
+        try (WindowStoreIterator<Long> it = store.fetch(key, from, to)) {
+            while (it.hasNext()) {
+                KeyValue<Long, Long> entry = it.next();
+                // The iterator only gives the start; all windows have the same size
+                Instant start = Instant.ofEpochMilli(entry.key);
+                counts.add(new WindowCount(start, start.plusMillis(windowSizeMs), entry.value));
+            }
+        }
+        return counts;
+    }
+
+    private ReadOnlyWindowStore<String, Long> store(String storeName) {
+        return queryService.retrieveQueryableStore(storeName, QueryableStoreTypes.windowStore());
+    }
+}
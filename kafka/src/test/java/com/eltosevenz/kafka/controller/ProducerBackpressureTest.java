@@ -0,0 +1,104 @@
+package com.eltosevenz.kafka.controller;
+
+import com.eltosevenz.kafka.service.KafkaProducerService;
+import com.eltosevenz.kafka.service.ProducerStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// One send may wait for its ack. linger.ms holds that ack back for a few seconds,
+// long enough for the next publish to run into the in-flight limit.
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.properties.linger.ms=3000",
+        "kafka.producer.max-in-flight=1",
+        "kafka.producer.in-flight-wait-ms=100",
+        "kafka.topic.partitions=1",
+        "kafka.streams.enabled=false",
+        "kafka.consumer.log.sample-every=0"
+})
+@AutoConfigureMockMvc
+@EmbeddedKafka(kraft = true)
+@DirtiesContext
+class ProducerBackpressureTest {
+
+    private static final String USER = "{\"id\":1,\"firstName\":\"Ada\",\"lastName\":\"Lovelace\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private KafkaProducerService producer;
+
+    @Test
+    void answers503WhileTheInFlightLimitIsReached() throws Exception {
+        ProducerStats stats = producer.getStats();
+        awaitIdle(stats);
+        long acked = stats.getAcked();
+        long rejected = stats.getRejected();
+
+        publish().andExpect(status().isOk());
+        assertEquals(1, stats.getInFlight());
+        publish().andExpect(status().isServiceUnavailable());
+        assertEquals(rejected + 1, stats.getRejected());
+
+        // The slot is free again once the first record is acked
+        awaitAcked(stats, acked + 1);
+        publish().andExpect(status().isOk());
+        awaitAcked(stats, acked + 2);
+        assertEquals(0, stats.getFailed());
+    }
+
+    @Test
+    void bulkStopsReadingAtTheInFlightLimit() throws Exception {
+        awaitIdle(producer.getStats());
+
+        mockMvc.perform(post("/api/kafka/publish_json/bulk")
+                        .contentType("application/x-ndjson")
+                        .content(USER + "\n" + USER + "\n" + USER + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lines").value(2))
+                .andExpect(jsonPath("$.sent").value(1))
+                .andExpect(jsonPath("$.acked").value(1))
+                .andExpect(jsonPath("$.pending").value(0))
+                .andExpect(jsonPath("$.abortedAtLine").value(2));
+    }
+
+    private ResultActions publish() throws Exception {
+        return mockMvc.perform(post("/api/kafka/publish_json")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(USER));
+    }
+
+    private static void awaitIdle(ProducerStats stats) throws InterruptedException {
+        await(() -> stats.getInFlight() == 0, "the in-flight sends");
+    }
+
+    // The slot is released before the ack is counted
+    private static void awaitAcked(ProducerStats stats, long acked) throws InterruptedException {
+        await(() -> stats.getAcked() == acked, acked + " acks");
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(20);
+        }
+    }
+}
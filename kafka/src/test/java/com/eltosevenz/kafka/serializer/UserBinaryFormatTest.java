@@ -0,0 +1,69 @@
+package com.eltosevenz.kafka.serializer;
+
+import com.eltosevenz.kafka.payload.User;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserBinaryFormatTest {
+
+    private final UserBinarySerializer serializer = new UserBinarySerializer();
+    private final UserBinaryDeserializer deserializer = new UserBinaryDeserializer();
+
+    @Test
+    void roundTripsNullNamesAndNegativeIds() {
+        for (int id : new int[]{0, 1, -1, 63, -64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            assertRoundTrip(user(id, "Ada", "Lovelace"));
+        }
+        assertRoundTrip(user(-5, null, null));
+        assertRoundTrip(user(7, "", null));
+        assertRoundTrip(user(-300, null, "Grüße 名前"));
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] data = serializer.serialize("demo-topic", user(1, "Ada", "Lovelace"));
+        data[0] = 0x02;
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("demo-topic", data));
+    }
+
+    @Test
+    void rejectsTruncatedRecord() {
+        byte[] data = serializer.serialize("demo-topic", user(1, "Ada", "Lovelace"));
+        byte[] truncated = Arrays.copyOf(data, data.length - 2);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("demo-topic", truncated));
+    }
+
+    @Test
+    void fallsBackToJson() {
+        byte[] json = " {\"id\":-12,\"firstName\":\"Ada\",\"lastName\":null}".getBytes(StandardCharsets.UTF_8);
+        assertFalse(UserBinaryFormat.isBinary(json));
+
+        User user = deserializer.deserialize("demo-topic", json);
+        assertEquals(-12, user.getId());
+        assertEquals("Ada", user.getFirstName());
+        assertNull(user.getLastName());
+    }
+
+    private void assertRoundTrip(User user) {
+        byte[] data = serializer.serialize("demo-topic", user);
+        assertTrue(UserBinaryFormat.isBinary(data));
+
+        User decoded = deserializer.deserialize("demo-topic", data);
+        assertEquals(user.getId(), decoded.getId());
+        assertEquals(user.getFirstName(), decoded.getFirstName());
+        assertEquals(user.getLastName(), decoded.getLastName());
+    }
+
+    private static User user(int id, String firstName, String lastName) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        return user;
+    }
+}
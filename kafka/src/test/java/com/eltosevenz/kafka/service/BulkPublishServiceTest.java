@@ -0,0 +1,107 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.exception.ProducerBackpressureException;
+import com.eltosevenz.kafka.payload.BulkPublishReport;
+import com.eltosevenz.kafka.payload.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// The producer is mocked, the user id of a line picks what its send does
+class BulkPublishServiceTest {
+
+    private static final int ACKED = 1;
+    private static final int ACK_FAILS = 2;
+    private static final int SEND_THROWS = 3;
+    private static final int BACKPRESSURE = 4;
+    private static final int NEVER_ACKED = 5;
+
+    private final KafkaProducerService producer = mock(KafkaProducerService.class);
+    private final BulkPublishService service = new BulkPublishService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "kafkaProducerService", producer);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "maxErrors", 100);
+        ReflectionTestUtils.setField(service, "completionTimeoutMs", 200L);
+        service.init();
+
+        when(producer.sendJsonMessage(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            return switch (user.getId()) {
+                case ACK_FAILS -> CompletableFuture.failedFuture(new IllegalStateException("broker said no"));
+                case SEND_THROWS -> throw new IllegalStateException("producer closed");
+                case BACKPRESSURE -> throw new ProducerBackpressureException("Too many messages waiting");
+                case NEVER_ACKED -> new CompletableFuture<>();
+                default -> CompletableFuture.completedFuture(null);
+            };
+        });
+    }
+
+    @Test
+    void countsInvalidFailedAndAbortedLines() throws Exception {
+        BulkPublishReport report = publish(
+                line(ACKED),
+                "{not json",
+                "",
+                line(ACK_FAILS),
+                line(SEND_THROWS),
+                line(ACKED),
+                line(BACKPRESSURE),
+                line(ACKED));
+
+        // The blank line is not counted, nothing after the aborted line is read
+        assertEquals(6, report.getLines());
+        assertEquals(1, report.getInvalid());
+        assertEquals(4, report.getSent());
+        assertEquals(2, report.getAcked());
+        assertEquals(2, report.getFailed());
+        assertEquals(0, report.getPending());
+        assertEquals(7L, report.getAbortedAtLine());
+        assertEquals("Too many messages waiting", report.getAbortReason());
+        assertEquals(List.of(2L, 4L, 5L), report.getErrors().stream().map(BulkPublishReport.LineError::line).toList());
+        verify(producer, times(5)).sendJsonMessage(any(User.class));
+    }
+
+    @Test
+    void reportsSendsStillPendingAtTheCompletionTimeout() throws Exception {
+        BulkPublishReport report = publish(line(ACKED), line(NEVER_ACKED), line(ACKED));
+
+        assertEquals(3, report.getSent());
+        assertEquals(2, report.getAcked());
+        assertEquals(1, report.getPending());
+        assertNull(report.getAbortedAtLine());
+    }
+
+    @Test
+    void capsTheErrorListButNotTheCounters() throws Exception {
+        ReflectionTestUtils.setField(service, "maxErrors", 2);
+
+        BulkPublishReport report = publish("x", line(ACK_FAILS), "y", line(ACKED));
+
+        assertEquals(2, report.getInvalid());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, report.getErrors().size());
+        assertTrue(report.isErrorsTruncated());
+    }
+
+    private BulkPublishReport publish(String... lines) throws Exception {
+        byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        return service.publishJson(new ByteArrayInputStream(body));
+    }
+
+    private static String line(int id) {
+        return "{\"id\":" + id + ",\"firstName\":\"Ada\",\"lastName\":\"Lovelace\"}";
+    }
+}
@@ -0,0 +1,244 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.payload.User;
+import com.eltosevenz.kafka.serializer.UserBinaryDeserializer;
+import com.eltosevenz.kafka.serializer.UserBinarySerializer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// End-to-end throughput and latency of demo-topic: KafkaProducerService.sendJsonMessage to the end of the
+// KafkaConsumerService listener, through an embedded single-node broker in the same JVM.
+// Latency is measured per record from the send (a header stamped by a producer interceptor) to the moment the
+// listener returns, with System.nanoTime on both sides. At a fixed rate the clock starts at the planned send time,
+// so a producer that falls behind shows up in the latency instead of hiding it.
+// Run with: mvn test -Dtest=EndToEndBenchmarkTest -Dbenchmark=true
+//   -Dbenchmark.rates=0,5000,20000   messages/s per run, 0 = as fast as the producer goes
+//   -Dbenchmark.messages=100000      per run, after a warm-up of 20000
+//   -Dbenchmark.payload-bytes=100    serialized value size
+//   -Dbenchmark.partitions=3         demo-topic partitions (and listener concurrency)
+//   -Dbenchmark.serializer=json      json or binary (UserBinarySerializer)
+//   -Dbenchmark.mode=record          record, batch or parallel listener (parallel: until handed to a worker lane)
+@SpringBootTest
+@EmbeddedKafka(kraft = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EndToEndBenchmarkTest {
+
+    private static final String TOPIC = "demo-topic";
+    private static final String SENT_HEADER = "benchmark-sent-nanos";
+    private static final int WARMUP = 20_000;
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 100_000);
+    private static final int PAYLOAD_BYTES = Integer.getInteger("benchmark.payload-bytes", 100);
+    private static final String SERIALIZER = System.getProperty("benchmark.serializer", "json");
+    private static final String MODE = System.getProperty("benchmark.mode", "record");
+
+    // Planned send time of the record being sent on this thread, read by SendTimeInterceptor
+    private static final ThreadLocal<Long> plannedSend = new ThreadLocal<>();
+    private static volatile Run run;
+
+    @Autowired
+    private KafkaProducerService producerService;
+
+    @DynamicPropertySource
+    static void benchmarkProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.bootstrap-servers", () -> System.getProperty("spring.embedded.kafka.brokers"));
+        registry.add("kafka.topic.partitions", () -> Integer.getInteger("benchmark.partitions", 3));
+        registry.add("kafka.consumer.batch.enabled", () -> MODE.equals("batch"));
+        registry.add("kafka.consumer.parallel.enabled", () -> MODE.equals("parallel"));
+        registry.add("kafka.consumer.log.sample-every", () -> 0);
+        registry.add("kafka.streams.enabled", () -> false);
+        registry.add("spring.kafka.producer.properties.interceptor.classes", SendTimeInterceptor.class::getName);
+        if (SERIALIZER.equals("binary")) {
+            registry.add("spring.kafka.producer.value-serializer", UserBinarySerializer.class::getName);
+            registry.add("spring.kafka.consumer.properties.spring.deserializer.value.delegate.class", UserBinaryDeserializer.class::getName);
+        }
+    }
+
+    @Test
+    void endToEnd() throws Exception {
+        String lastName = lastNameForPayload();
+        measure(WARMUP, 0, lastName);
+        System.out.printf("%nmode=%s serializer=%s payload=%dB partitions=%d messages=%d%n", MODE, SERIALIZER,
+                PAYLOAD_BYTES, Integer.getInteger("benchmark.partitions", 3), MESSAGES);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "rate", "sent/s", "recv/s", "MB/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (String rate : System.getProperty("benchmark.rates", "0").split(",")) {
+            int perSecond = Integer.parseInt(rate.trim());
+            Run result = measure(MESSAGES, perSecond, lastName);
+            long[] latencies = result.sortedLatencies();
+            double sendSeconds = (result.lastSend - result.start) / 1e9;
+            double receiveSeconds = (result.lastReceive.get() - result.start) / 1e9;
+            System.out.printf("%-10s %10.0f %10.0f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    perSecond == 0 ? "max" : perSecond, MESSAGES / sendSeconds, MESSAGES / receiveSeconds,
+                    MESSAGES * (double) PAYLOAD_BYTES / receiveSeconds / 1e6,
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private Run measure(int messages, int perSecond, String lastName) throws InterruptedException {
+        Run current = new Run(messages);
+        run = current;
+        long interval = perSecond == 0 ? 0 : 1_000_000_000L / perSecond;
+        current.start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            long planned = current.start + i * interval;
+            if (interval > 0) {
+                long wait;
+                while ((wait = planned - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                plannedSend.set(planned);
+            }
+            User user = new User();
+            user.setId(i);
+            user.setFirstName("Benchmark");
+            user.setLastName(lastName);
+            producerService.sendJsonMessage(user);
+        }
+        plannedSend.remove();
+        current.lastSend = System.nanoTime();
+        assertTrue(current.done.await(5, TimeUnit.MINUTES), "records not consumed: " + current.done.getCount());
+        return current;
+    }
+
+    // Pads lastName so the serialized value has about PAYLOAD_BYTES bytes
+    private static String lastNameForPayload() {
+        User user = new User();
+        user.setId(WARMUP);
+        user.setFirstName("Benchmark");
+        user.setLastName("");
+        Serializer<User> serializer = SERIALIZER.equals("binary") ? new UserBinarySerializer() : new JsonSerializer<>();
+        int base = serializer.serialize(TOPIC, user).length;
+        return "x".repeat(Math.max(1, PAYLOAD_BYTES - base));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static void received(ConsumerRecord<?, ?> record) {
+        Header sent = record.headers().lastHeader(SENT_HEADER);
+        Run current = run;
+        if (sent != null && current != null && record.topic().equals(TOPIC)) {
+            current.record(System.nanoTime() - ByteBuffer.wrap(sent.value()).getLong());
+        }
+    }
+
+    private static class Run {
+        private final long[] latencies;
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch done;
+        private final AtomicLong lastReceive = new AtomicLong();
+        private long start;
+        private long lastSend;
+
+        Run(int messages) {
+            latencies = new long[messages];
+            done = new CountDownLatch(messages);
+        }
+
+        void record(long nanos) {
+            int index = count.getAndIncrement();
+            if (index < latencies.length) {
+                latencies[index] = nanos;
+                lastReceive.set(System.nanoTime());
+                done.countDown();
+            }
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, Math.min(count.get(), latencies.length));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    // Stamps each record with its send time. Runs inside KafkaProducer.send on the sending thread.
+    public static class SendTimeInterceptor implements ProducerInterceptor<Object, Object> {
+
+        @Override
+        public ProducerRecord<Object, Object> onSend(ProducerRecord<Object, Object> record) {
+            Long planned = plannedSend.get();
+            long sent = planned != null ? planned : System.nanoTime();
+            record.headers().add(SENT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(sent).array());
+            return record;
+        }
+
+        @Override
+        public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs) {
+        }
+    }
+
+    // Picked up by every listener container factory of the application
+    @TestConfiguration
+    static class ReceiveTimeConfig {
+
+        @Bean
+        RecordInterceptor<Object, Object> receiveTimeRecordInterceptor() {
+            return new RecordInterceptor<>() {
+                @Override
+                public ConsumerRecord<Object, Object> intercept(ConsumerRecord<Object, Object> record, Consumer<Object, Object> consumer) {
+                    return record;
+                }
+
+                @Override
+                public void afterRecord(ConsumerRecord<Object, Object> record, Consumer<Object, Object> consumer) {
+                    received(record);
+                }
+            };
+        }
+
+        @Bean
+        BatchInterceptor<Object, Object> receiveTimeBatchInterceptor() {
+            return new BatchInterceptor<>() {
+                @Override
+                public ConsumerRecords<Object, Object> intercept(ConsumerRecords<Object, Object> records, Consumer<Object, Object> consumer) {
+                    return records;
+                }
+
+                @Override
+                public void success(ConsumerRecords<Object, Object> records, Consumer<Object, Object> consumer) {
+                    records.forEach(EndToEndBenchmarkTest::received);
+                }
+            };
+        }
+    }
+}
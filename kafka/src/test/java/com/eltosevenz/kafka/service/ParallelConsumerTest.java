@@ -0,0 +1,276 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.payload.User;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// demo-topic-parallel on one partition and four lanes: per-key order, failed records in demo-topic-dlt,
+// commits that stop at the first unfinished record, and what happens when demo-topic-dlt cannot be written
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "kafka.consumer.parallel.enabled=true",
+        "kafka.consumer.parallel.workers=4",
+        "kafka.topic.partitions=1",
+        "kafka.streams.enabled=false",
+        "kafka.consumer.log.sample-every=0",
+        "spring.kafka.listener.poll-timeout=100",
+        "kafka.consumer.parallel.dlt-attempts=3",
+        "kafka.consumer.parallel.dlt-backoff-ms=50"
+})
+@EmbeddedKafka(kraft = true)
+class ParallelConsumerTest {
+
+    private static final String TOPIC = "demo-topic";
+
+    @Autowired
+    private KafkaTemplate<String, User> kafkaTemplate;
+
+    @Autowired
+    private RecordingHandler handler;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @SpyBean(name = "retryKafkaTemplate")
+    private KafkaOperations<Object, Object> retryKafkaTemplate;
+
+    @TestConfiguration
+    static class HandlerConfig {
+        @Bean
+        RecordingHandler recordingHandler() {
+            return new RecordingHandler();
+        }
+    }
+
+    // Records the ids seen per first name (the record key), fails "poison" and blocks "slow" users
+    static class RecordingHandler implements UserHandler {
+        final Map<String, List<Integer>> idsByKey = new ConcurrentHashMap<>();
+        volatile CountDownLatch slowGate = new CountDownLatch(0);
+
+        @Override
+        public void handle(User user) {
+            if ("poison".equals(user.getLastName())) {
+                throw new IllegalStateException("poison record");
+            }
+            if ("slow".equals(user.getLastName())) {
+                try {
+                    slowGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            idsByKey.computeIfAbsent(user.getFirstName(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(user.getId());
+            // Different keys finish out of order
+            if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        int processed(String keyPrefix) {
+            return idsByKey.entrySet().stream().filter(e -> e.getKey().startsWith(keyPrefix))
+                    .mapToInt(e -> e.getValue().size()).sum();
+        }
+    }
+
+    @Test
+    void keepsOrderPerKeyAndDeadLettersFailedRecords() throws Exception {
+        awaitCommitted(endOffset());
+        for (int id = 0; id < 50; id++) {
+            for (int k = 0; k < 8; k++) {
+                send("order-" + k, id, "ok");
+            }
+            if (id == 25) {
+                send("order-3", 1000, "poison");
+            }
+        }
+        long end = endOffset();
+
+        await(() -> handler.processed("order-") == 400, "all records processed");
+        for (int k = 0; k < 8; k++) {
+            List<Integer> ids = handler.idsByKey.get("order-" + k);
+            synchronized (ids) {
+                for (int i = 0; i < 50; i++) {
+                    assertEquals(i, ids.get(i), "order of key order-" + k);
+                }
+            }
+        }
+        // The failed record is acknowledged after its dead-letter copy, so the whole partition gets committed
+        awaitCommitted(end);
+
+        List<ConsumerRecord<String, String>> dead = deadLettered("order-3");
+        assertEquals(1, dead.size());
+        assertTrue(dead.get(0).value().contains("poison"));
+    }
+
+    @Test
+    void deadLetterPublishIsRetriedUntilTheBrokerAcks() throws Exception {
+        awaitCommitted(endOffset());
+        KafkaException brokerDown = new KafkaException("demo-topic-dlt unavailable");
+        doThrow(brokerDown).doThrow(brokerDown).doCallRealMethod()
+                .when(retryKafkaTemplate).send(any(ProducerRecord.class));
+
+        send("dlt-retry", 1, "poison");
+        awaitCommitted(endOffset());
+
+        verify(retryKafkaTemplate, times(3)).send(any(ProducerRecord.class));
+        assertEquals(1, deadLettered("dlt-retry").size());
+    }
+
+    @Test
+    void deadLetterPublishThatKeepsFailingStopsTheContainer() throws Exception {
+        awaitCommitted(endOffset());
+        doThrow(new KafkaException("demo-topic-dlt unavailable"))
+                .when(retryKafkaTemplate).send(any(ProducerRecord.class));
+        MessageListenerContainer container = registry.getListenerContainer("demo-topic-parallel");
+        try {
+            long poisonOffset = send("dlt-down", 1, "poison");
+            await(() -> !container.isRunning(), "container stopped");
+            assertEquals(poisonOffset, committed());
+            verify(retryKafkaTemplate, times(3)).send(any(ProducerRecord.class));
+
+            // Once the topic is back, a restart delivers the record again and it gets through
+            doCallRealMethod().when(retryKafkaTemplate).send(any(ProducerRecord.class));
+            container.start();
+            awaitCommitted(poisonOffset + 1);
+            assertEquals(1, deadLettered("dlt-down").size());
+        } finally {
+            container.start();
+        }
+    }
+
+    @Test
+    void commitsStopAtTheFirstUnfinishedRecord() throws Exception {
+        awaitCommitted(endOffset());
+        // Keys on another lane than the slow record, a shared lane would queue behind it
+        int slowLane = Math.floorMod("gate-slow".hashCode(), 4);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < 4; i++) {
+            if (Math.floorMod(("gate-" + i).hashCode(), 4) != slowLane) {
+                keys.add("gate-" + i);
+            }
+        }
+
+        handler.slowGate = new CountDownLatch(1);
+        // Stopped while sending, so the slow record and the ones behind it come in one poll: the container
+        // does not poll again before the previous poll is fully acknowledged
+        MessageListenerContainer container = registry.getListenerContainer("demo-topic-parallel");
+        container.stop();
+        try {
+            long slowOffset = send("gate-slow", 0, "slow");
+            for (int id = 0; id < 20; id++) {
+                send(keys.get(id % keys.size()), id, "ok");
+            }
+            long end = endOffset();
+            container.start();
+
+            await(() -> handler.processed("gate-") == 20, "records behind the slow one processed");
+            // Give the container a few polls to commit what it may
+            Thread.sleep(1000);
+            assertEquals(slowOffset, committed());
+
+            handler.slowGate.countDown();
+            awaitCommitted(end);
+        } finally {
+            handler.slowGate.countDown();
+            container.start();
+        }
+    }
+
+    private long send(String key, int id, String lastName) throws Exception {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(key);
+        user.setLastName(lastName);
+        return kafkaTemplate.send(TOPIC, key, user).get(10, TimeUnit.SECONDS).getRecordMetadata().offset();
+    }
+
+    private List<ConsumerRecord<String, String>> deadLettered(String key) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("parallel-dlt-check-" + key, "false", broker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            consumer.subscribe(List.of("demo-topic-dlt"));
+            List<ConsumerRecord<String, String>> dead = new ArrayList<>();
+            KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(5)).records("demo-topic-dlt").forEach(record -> {
+                if (key.equals(record.key())) {
+                    dead.add(record);
+                }
+            });
+            return dead;
+        }
+    }
+
+    private long endOffset() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("parallel-end-check", "false", broker);
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            TopicPartition partition = new TopicPartition(TOPIC, 0);
+            return consumer.endOffsets(List.of(partition)).get(partition);
+        }
+    }
+
+    private long committed() throws Exception {
+        OffsetAndMetadata committed = KafkaTestUtils.getCurrentOffset(broker.getBrokersAsString(), "demo-group", TOPIC, 0);
+        return committed == null ? 0 : committed.offset();
+    }
+
+    private void awaitCommitted(long offset) throws Exception {
+        await(() -> {
+            try {
+                return committed() == offset;
+            } catch (Exception e) {
+                return false;
+            }
+        }, "offset " + offset + " committed");
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(20);
+        }
+    }
+}
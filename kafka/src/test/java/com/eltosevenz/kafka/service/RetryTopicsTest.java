@@ -0,0 +1,136 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.payload.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Record mode with short tier delays (100, 200, 400 ms): failing records pass every retry tier once
+// and end up in demo-topic-dlt, unparsable ones go there directly. Checked through kafka.retry.records.
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "kafka.retry.attempts=4",
+        "kafka.retry.delay-ms=100",
+        "kafka.retry.multiplier=2",
+        "kafka.topic.partitions=1",
+        "kafka.streams.enabled=false",
+        "kafka.consumer.log.sample-every=0"
+})
+@EmbeddedKafka(kraft = true)
+@DirtiesContext
+class RetryTopicsTest {
+
+    private static final String TOPIC = "demo-topic";
+
+    @Autowired
+    private KafkaTemplate<String, User> kafkaTemplate;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CountingHandler handler;
+
+    @TestConfiguration
+    static class HandlerConfig {
+        @Bean
+        CountingHandler countingHandler() {
+            return new CountingHandler();
+        }
+    }
+
+    // Counts deliveries per user id and fails every "poison" user
+    static class CountingHandler implements UserHandler {
+        final Map<Integer, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+
+        @Override
+        public void handle(User user) {
+            deliveries.computeIfAbsent(user.getId(), id -> new AtomicInteger()).incrementAndGet();
+            if ("poison".equals(user.getLastName())) {
+                throw new IllegalStateException("poison record");
+            }
+        }
+
+        int delivered(int id) {
+            AtomicInteger count = deliveries.get(id);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    @Test
+    void failedRecordsPassEveryTierOnTheWayToTheDlt() throws Exception {
+        for (int id = 0; id < 20; id++) {
+            send(id, id == 5 || id == 12 ? "poison" : "ok");
+        }
+        sendRaw("{not a user");
+
+        await(() -> count("demo-topic-dlt") == 3, "three records in demo-topic-dlt");
+        assertEquals(2, count("demo-topic-retry-0"));
+        assertEquals(2, count("demo-topic-retry-1"));
+        assertEquals(2, count("demo-topic-retry-2"));
+
+        // Main delivery plus one per tier, the healthy records once
+        for (int id = 0; id < 20; id++) {
+            assertEquals(id == 5 || id == 12 ? 4 : 1, handler.delivered(id), "deliveries of user " + id);
+        }
+    }
+
+    private double count(String topic) {
+        Counter counter = meterRegistry.find("kafka.retry.records").tag("topic", topic).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private void send(int id, String lastName) throws Exception {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName("retry-" + id);
+        user.setLastName(lastName);
+        kafkaTemplate.send(TOPIC, user.getFirstName(), user).get(10, TimeUnit.SECONDS);
+    }
+
+    private void sendRaw(String value) throws Exception {
+        Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(props,
+                new StringSerializer(), new ByteArraySerializer());
+        try {
+            new KafkaTemplate<>(factory).send(TOPIC, "raw", value.getBytes(StandardCharsets.UTF_8))
+                    .get(10, TimeUnit.SECONDS);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.eltosevenz.kafka.service;
+
+import com.eltosevenz.kafka.payload.User;
+import com.eltosevenz.kafka.payload.WindowCount;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Records carry their own timestamps, so they land in known windows whatever the wall clock does
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "kafka.streams.enabled=true",
+        "kafka.streams.window-size-ms=60000",
+        "spring.kafka.streams.properties.commit.interval.ms=100",
+        "kafka.topic.partitions=1",
+        "kafka.consumer.log.sample-every=0"
+})
+@EmbeddedKafka(kraft = true)
+@DirtiesContext
+class UserStatsServiceTest {
+
+    private static final String TOPIC = "demo-topic";
+    private static final long WINDOW_MS = 60_000;
+
+    @TempDir
+    static Path stateDir;
+
+    @DynamicPropertySource
+    static void streamsStateDir(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.streams.state-dir", () -> stateDir.toString());
+    }
+
+    @Autowired
+    private KafkaTemplate<String, User> kafkaTemplate;
+
+    @Autowired
+    private UserStatsService userStats;
+
+    @Test
+    void countsUsersPerWindow() throws Exception {
+        Instant first = Instant.ofEpochMilli(System.currentTimeMillis() / WINDOW_MS * WINDOW_MS);
+        Instant second = first.plusMillis(WINDOW_MS);
+
+        send(first.plusMillis(1_000), 1, "Smith");
+        send(first.plusMillis(2_000), 2, "Jones");
+        send(first.plusMillis(3_000), 3, "Smith");
+        send(first.plusMillis(4_000), 1, "Smith");
+        send(first.plusMillis(5_000), 2, "Jones");
+        send(second.plusMillis(1_000), 1, "Smith");
+
+        List<WindowCount> smith = await(() -> userStats.lastNameCounts("Smith", first, second),
+                counts -> counts.size() == 2 && counts.get(1).count() == 1, "Smith in both windows");
+        assertEquals(List.of(new WindowCount(first, second, 3), new WindowCount(second, second.plusMillis(WINDOW_MS), 1)),
+                smith);
+        assertEquals(List.of(new WindowCount(first, second, 2)), userStats.lastNameCounts("Jones", first, second));
+
+        // Ids 1, 2 and 3 in the first window, only 1 in the second
+        List<WindowCount> distinct = await(() -> userStats.distinctIds(first, second),
+                counts -> counts.size() == 2 && counts.get(0).count() == 3, "distinct ids of both windows");
+        assertEquals(1, distinct.get(1).count());
+    }
+
+    private void send(Instant timestamp, int id, String lastName) throws Exception {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName("user-" + id);
+        user.setLastName(lastName);
+        kafkaTemplate.send(TOPIC, null, timestamp.toEpochMilli(), user.getFirstName(), user).get(10, TimeUnit.SECONDS);
+    }
+
+    // Polls a query until the expected windows show up; the stores are not queryable until the stream runs
+    private static <T> T await(Supplier<T> query, Predicate<T> done, String what)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (true) {
+            try {
+                T result = query.get();
+                if (done.test(result)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // store not ready yet
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.eltosevenz.transactionaldemo.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs the JMH suite once per thread count and writes all results into a single JSON file,
+// so two releases can be compared by diffing (or plotting) one file each.
+// Accepts the usual JMH options (benchmark regex, -p catalogSize=1000, -wi, -i, ...).
+// -Djmh.threads=1,4,16 picks the thread counts, -Djmh.result=target/jmh-result.json the output file.
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String[] threadCounts = System.getProperty("jmh.threads", "1,4,16").split(",");
+        File resultFile = new File(System.getProperty("jmh.result", "target/jmh-result.json"));
+
+        List<RunResult> results = new ArrayList<>();
+        for (String threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()));
+            if (commandLine.getIncludes().isEmpty()) {
+                options.include(TransactionalServiceBenchmark.class.getSimpleName());
+            }
+            results.addAll(new Runner(options.build()).run());
+        }
+
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+        try (PrintStream out = new PrintStream(resultFile, "UTF-8")) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results written to " + resultFile.getAbsolutePath());
+    }
+}
@@ -0,0 +1,154 @@
+package com.eltosevenz.transactionaldemo.benchmark;
+
+import com.eltosevenz.transactionaldemo.TransactionaldemoApplication;
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.service.OrderRequestService;
+import com.eltosevenz.transactionaldemo.service.ProductListService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Throughput of the transactional service methods against an embedded H2 database.
+// Every trial boots a fresh context on its own in-memory database, seeded with catalogSize products.
+// isolation is the connection default (Hikari transaction-isolation): it applies to the methods that
+// declare Isolation.DEFAULT (placeOrder, createProduct, getAllProducts); updateStock (SERIALIZABLE) and
+// programmaticTransaction (READ_COMMITTED) keep their own level.
+// Thread counts are set by BenchmarkRunner, which runs the suite once per count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionalServiceBenchmark {
+
+    // Large enough that placeOrder never runs out of stock during a trial
+    private static final int INITIAL_STOCK = 1_000_000_000;
+
+    @Param({"100", "1000", "10000"})
+    public int catalogSize;
+
+    @Param({"READ_COMMITTED", "REPEATABLE_READ", "SERIALIZABLE"})
+    public String isolation;
+
+    private ConfigurableApplicationContext context;
+    private OrderRequestService orderService;
+    private ProductListService productService;
+    private String[] codes;
+    private Long[] ids;
+    private final AtomicLong newCodes = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start(BenchmarkParams params) {
+        SpringApplication application = new SpringApplication(TransactionaldemoApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        // Command-line arguments, so they win over application.properties
+        context = application.run(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID(),
+                "--spring.datasource.hikari.transaction-isolation=TRANSACTION_" + isolation,
+                "--spring.datasource.hikari.maximum-pool-size=" + Math.max(10, params.getThreads()),
+                "--spring.h2.console.enabled=false",
+                "--spring.devtools.restart.enabled=false",
+                "--logging.level.root=WARN");
+        orderService = context.getBean(OrderRequestService.class);
+        productService = context.getBean(ProductListService.class);
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    // Counts the calls that threw (stock conflicts, serialization failures, ...) next to the throughput
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long failures;
+    }
+
+    @Benchmark
+    public Object placeOrder(Failures failures) {
+        try {
+            return orderService.placeOrder(randomCode(), 1);
+        } catch (RuntimeException e) {
+            failures.failures++;
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object updateStock(Failures failures) {
+        try {
+            return productService.updateStock(randomId(), INITIAL_STOCK - ThreadLocalRandom.current().nextInt(1000));
+        } catch (RuntimeException e) {
+            failures.failures++;
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object createProduct(Failures failures) throws InvalidStockException {
+        try {
+            return productService.createProduct(newProduct());
+        } catch (RuntimeException e) {
+            failures.failures++;
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object programmaticTransaction(Failures failures) {
+        try {
+            return productService.programmaticTransaction(newProduct());
+        } catch (RuntimeException e) {
+            failures.failures++;
+            return e;
+        }
+    }
+
+    @Benchmark
+    public List<ProductList> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    private void seed(JdbcTemplate jdbc) {
+        jdbc.batchUpdate("INSERT INTO PRODUCT_LIST (id, code, name, stock, version) " +
+                        "VALUES (NEXT VALUE FOR PRODUCT_LIST_SEQ, ?, ?, ?, 0)",
+                IntStream.range(0, catalogSize)
+                        .mapToObj(i -> new Object[]{"BENCH-" + i, "Benchmark product " + i, INITIAL_STOCK})
+                        .toList());
+        List<Map<String, Object>> rows = jdbc.queryForList("SELECT id, code FROM PRODUCT_LIST WHERE code LIKE 'BENCH-%'");
+        codes = rows.stream().map(row -> (String) row.get("CODE")).toArray(String[]::new);
+        ids = rows.stream().map(row -> ((Number) row.get("ID")).longValue()).toArray(Long[]::new);
+    }
+
+    private String randomCode() {
+        return codes[ThreadLocalRandom.current().nextInt(codes.length)];
+    }
+
+    private Long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    // createProduct and programmaticTransaction grow the catalog, each call needs a fresh code
+    private ProductList newProduct() {
+        ProductList product = new ProductList();
+        product.setCode("NEW-" + newCodes.incrementAndGet());
+        product.setName("New product");
+        product.setStock(100);
+        return product;
+    }
+}
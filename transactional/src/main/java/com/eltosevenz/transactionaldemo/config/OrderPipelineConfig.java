@@ -0,0 +1,21 @@
+package com.eltosevenz.transactionaldemo.config;
+
+import com.eltosevenz.transactionaldemo.service.GroupCommitOrderPipeline;
+import com.eltosevenz.transactionaldemo.service.OrderRequestService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class OrderPipelineConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "orders.group-commit.enabled", havingValue = "true")
+    public GroupCommitOrderPipeline groupCommitOrderPipeline(OrderRequestService orderService,
+                                                             @Value("${orders.group-commit.queue-capacity:10000}") int queueCapacity,
+                                                             @Value("${orders.group-commit.max-batch-size:200}") int maxBatchSize,
+                                                             @Value("${orders.group-commit.max-wait-ms:5}") long maxWaitMs) {
+        return new GroupCommitOrderPipeline(orderService, queueCapacity, maxBatchSize, maxWaitMs);
+    }
+}
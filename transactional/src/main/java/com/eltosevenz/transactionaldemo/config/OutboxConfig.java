@@ -0,0 +1,34 @@
+package com.eltosevenz.transactionaldemo.config;
+
+import com.eltosevenz.transactionaldemo.repository.OutboxEventRepository;
+import com.eltosevenz.transactionaldemo.service.OutboxRelay;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@ConditionalOnProperty(name = "orders.outbox.enabled", havingValue = "true")
+public class OutboxConfig {
+
+    @Bean
+    public NewTopic orderEventsTopic(@Value("${orders.outbox.topic:order-events}") String topic,
+                                     @Value("${orders.outbox.partitions:3}") int partitions) {
+        return new NewTopic(topic, partitions, (short) 1);
+    }
+
+    @Bean(destroyMethod = "close")
+    public OutboxRelay outboxRelay(OutboxEventRepository outboxRepository, KafkaTemplate<String, String> kafkaTemplate,
+                                   PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                   @Value("${orders.outbox.topic:order-events}") String topic,
+                                   @Value("${orders.outbox.batch-size:500}") int batchSize,
+                                   @Value("${orders.outbox.poll-interval-ms:100}") long pollIntervalMs,
+                                   @Value("${orders.outbox.send-timeout-ms:30000}") long sendTimeoutMs) {
+        return new OutboxRelay(outboxRepository, kafkaTemplate, transactionManager, meterRegistry,
+                topic, batchSize, pollIntervalMs, sendTimeoutMs);
+    }
+}
@@ -0,0 +1,97 @@
+package com.eltosevenz.transactionaldemo.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Sends connections of read-only transactions to the replica pool and everything else to the primary.
+//Must sit behind a LazyConnectionDataSourceProxy: the transaction manager asks for a connection before
+//the read-only flag of the new transaction is published, the lazy proxy defers that until the first statement.
+//
+//Read-your-writes: for readYourWritesMs after a client's write transaction commits, that client's read-only
+//transactions stay on the primary, so it never reads from a replica that has not caught up with its own write.
+//Other clients keep reading from the replica. The client is whatever bindClient put on the current thread
+//(ReadYourWritesFilter binds one per HTTP request), or the thread itself when nothing is bound.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private static final Object WRITE_TRACKED = new Object();
+
+    // Above this many pinned clients, expired pins are swept on the next write
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private static final ThreadLocal<Object> CLIENT = new ThreadLocal<>();
+
+    private final long readYourWritesNanos;
+
+    // Commit time of the last write per client
+    private final Map<Object, Long> lastWriteCommitNanos = new ConcurrentHashMap<>();
+
+    public ReadWriteRoutingDataSource(long readYourWritesMs) {
+        this.readYourWritesNanos = readYourWritesMs * 1_000_000;
+    }
+
+    public static void bindClient(Object client) {
+        CLIENT.set(client);
+    }
+
+    public static void unbindClient() {
+        CLIENT.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return readYourWritesNanos > 0 && isPinned(currentClient()) ? Route.PRIMARY : Route.REPLICA;
+        }
+        trackWrite();
+        return Route.PRIMARY;
+    }
+
+    private boolean isPinned(Object client) {
+        Long committed = lastWriteCommitNanos.get(client);
+        if (committed == null) {
+            return false;
+        }
+        if (System.nanoTime() - committed < readYourWritesNanos) {
+            return true;
+        }
+        lastWriteCommitNanos.remove(client, committed);
+        return false;
+    }
+
+    // Remembers the commit time of the surrounding read-write transaction for its client, once per transaction
+    private void trackWrite() {
+        if (readYourWritesNanos <= 0
+                || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_TRACKED)) {
+            return;
+        }
+        Object client = currentClient();
+        TransactionSynchronizationManager.bindResource(WRITE_TRACKED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long now = System.nanoTime();
+                lastWriteCommitNanos.put(client, now);
+                if (lastWriteCommitNanos.size() > SWEEP_THRESHOLD) {
+                    lastWriteCommitNanos.values().removeIf(committed -> now - committed >= readYourWritesNanos);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_TRACKED);
+            }
+        });
+    }
+
+    private static Object currentClient() {
+        Object client = CLIENT.get();
+        return client != null ? client : Thread.currentThread().threadId();
+    }
+}
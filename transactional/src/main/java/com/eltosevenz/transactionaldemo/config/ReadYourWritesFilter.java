@@ -0,0 +1,28 @@
+package com.eltosevenz.transactionaldemo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+//Binds the calling client for ReadWriteRoutingDataSource's read-your-writes pin: the X-Client-Id header,
+//or the remote address for clients that do not send one.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String CLIENT_HEADER = "X-Client-Id";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = request.getHeader(CLIENT_HEADER);
+        ReadWriteRoutingDataSource.bindClient(client != null && !client.isBlank() ? client : request.getRemoteAddr());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingDataSource.unbindClient();
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.eltosevenz.transactionaldemo.controller;
 
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import com.eltosevenz.transactionaldemo.service.GroupCommitOrderPipeline;
+import com.eltosevenz.transactionaldemo.service.OrderBatchService;
 import com.eltosevenz.transactionaldemo.service.OrderRequestService;
+import com.eltosevenz.transactionaldemo.service.StockReservationLedger;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
@@ -11,8 +20,31 @@ public class OrderController {
     @Autowired
     private OrderRequestService orderService;
 
+    @Autowired
+    private OrderBatchService orderBatchService;
+
+    @Autowired
+    private StockReservationLedger reservationLedger;
+
+    // Only present when orders.group-commit.enabled=true
+    @Autowired
+    private ObjectProvider<GroupCommitOrderPipeline> groupCommitPipeline;
+
     @PostMapping("/place")
-    public String placeOrder(@RequestParam String productCode, @RequestParam int quantity) {
-        return orderService.placeOrder(productCode, quantity);
+    public CompletableFuture<String> placeOrder(@RequestParam String productCode, @RequestParam int quantity) {
+        if (reservationLedger.isEnabled()) {
+            return CompletableFuture.completedFuture(reservationLedger.reserve(productCode, quantity));
+        }
+        GroupCommitOrderPipeline pipeline = groupCommitPipeline.getIfAvailable();
+        if (pipeline != null) {
+            // Async MVC: the request thread is released while the order waits for its group commit
+            return pipeline.submit(productCode, quantity);
+        }
+        return CompletableFuture.completedFuture(orderService.placeOrder(productCode, quantity));
+    }
+
+    @PostMapping("/batch")
+    public List<OrderResult> placeOrders(@RequestBody List<OrderLine> orders) {
+        return orderBatchService.placeOrders(orders);
     }
 }
@@ -1,11 +1,27 @@
 package com.eltosevenz.transactionaldemo.controller;
 
 import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.ImportFormat;
+import com.eltosevenz.transactionaldemo.model.ImportReport;
 import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockConcurrencyMode;
+import com.eltosevenz.transactionaldemo.service.ProductImportService;
 import com.eltosevenz.transactionaldemo.service.ProductListService;
+import com.eltosevenz.transactionaldemo.service.ShardedStockService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -15,9 +31,60 @@ public class ProductController {
     @Autowired
     ProductListService productService;
 
+    @Autowired
+    ShardedStockService shardedStockService;
+
+    @Autowired
+    ProductImportService productImportService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${products.update-stock.mode:SERIALIZABLE}")
+    StockConcurrencyMode updateStockMode;
+
+    @Value("${products.list.max-page-size:1000}")
+    int maxPageSize;
+
+    @Value("${products.import.chunk-size:1000}")
+    int importChunkSize;
+
+    //Keyset pagination: pass the X-Next-After-Id header of a page as afterId to get the next one.
+    //The header is absent on the last page.
     @GetMapping("/list")
-    public List<ProductList> getProductList() {
-        return productService.getAllProducts();
+    public ResponseEntity<List<ProductList>> getProductList(@RequestParam(defaultValue = "0") long afterId,
+                                                            @RequestParam(defaultValue = "100") int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        List<ProductList> page = productService.getProductPage(afterId, pageSize);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            response.header("X-Next-After-Id", String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+
+    //Whole catalog as newline-delimited JSON, written row by row while the cursor is read
+    @GetMapping(value = "/list/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamProductList() {
+        StreamingResponseBody body = out -> {
+            // Let Jackson's buffer decide when bytes hit the socket instead of flushing every row
+            try (SequenceWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                productService.streamAllProducts(product -> {
+                    try {
+                        writer.write(product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 
     @PostMapping("/add")
@@ -25,6 +92,20 @@ public class ProductController {
         return productService.createProduct(product);
     }
 
+    //Bulk import from a CSV (text/csv) or NDJSON (application/x-ndjson) body, read as it arrives.
+    //Every chunkSize rows are committed together; rejected rows are listed in the report.
+    @PostMapping("/import")
+    public ImportReport importProducts(InputStream body,
+                                       @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                       @RequestParam(required = false) ImportFormat format,
+                                       @RequestParam(required = false) Integer chunkSize) throws IOException {
+        if (format == null) {
+            format = contentType != null && contentType.startsWith("text/csv") ? ImportFormat.CSV : ImportFormat.NDJSON;
+        }
+        int rowsPerChunk = chunkSize != null ? Math.max(1, chunkSize) : importChunkSize;
+        return productImportService.importProducts(body, format, rowsPerChunk);
+    }
+
     @PostMapping("/addByManualTrans")
     public ProductList addProductByManual(@RequestBody ProductList product)  {
         return productService.programmaticTransaction(product);
@@ -32,6 +113,15 @@ public class ProductController {
 
     @PostMapping("/update")
     public ProductList updateStock(@RequestParam long productId, @RequestParam int stock)  {
+        if (updateStockMode == StockConcurrencyMode.OPTIMISTIC) {
+            return productService.updateStockOptimistic(productId, stock);
+        }
         return productService.updateStock(productId, stock);
     }
+
+    //Splits a hot product's stock over `shards` rows (0 merges it back into the product row)
+    @PostMapping("/shard")
+    public ProductList shardStock(@RequestParam String productCode, @RequestParam int shards) {
+        return shardedStockService.reshard(productCode, shards);
+    }
 }
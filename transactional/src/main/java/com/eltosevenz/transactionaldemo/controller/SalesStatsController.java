@@ -0,0 +1,62 @@
+package com.eltosevenz.transactionaldemo.controller;
+
+import com.eltosevenz.transactionaldemo.model.RollupGranularity;
+import com.eltosevenz.transactionaldemo.model.SalesRollup;
+import com.eltosevenz.transactionaldemo.repository.SalesRollupRepository;
+import com.eltosevenz.transactionaldemo.service.SalesRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+//Sales statistics answered from SALES_ROLLUP only, never by scanning OrderRequest.
+//Orders show up once the rollup folder has run (orders.sales-rollup.fold-interval-ms).
+//Times are UTC, e.g. from=2024-10-01T00:00:00
+@RestController
+@RequestMapping("/api/orders/stats")
+public class SalesStatsController {
+
+    @Autowired
+    private SalesRollupRepository rollupRepository;
+
+    @Autowired
+    private SalesRollupService rollupService;
+
+    // Units and orders per bucket for one product, defaults to the last 24 buckets
+    @GetMapping
+    public List<SalesRollup> productSales(@RequestParam String productCode,
+                                          @RequestParam(defaultValue = "HOUR") RollupGranularity granularity,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime start = from != null ? from : granularity.bucketOf(end).minus(23, granularity.getUnit());
+        return rollupRepository.findByProductCodeAndGranularityAndBucketStartBetweenOrderByBucketStart(
+                productCode, granularity, start, end);
+    }
+
+    // Best-selling products over a window, defaults to the current day
+    @GetMapping("/top")
+    public List<SalesRollupRepository.ProductSales> topProducts(@RequestParam(defaultValue = "DAY") RollupGranularity granularity,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        LocalDateTime end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime start = from != null ? from : granularity.bucketOf(end);
+        return rollupRepository.findTopProducts(granularity, start, end, Limit.of(limit));
+    }
+
+    // Counts the orders that are not in the rollups yet (e.g. placed before rollups existed)
+    @PostMapping("/backfill")
+    public SalesRollupService.BackfillResult backfill(@RequestParam(defaultValue = "1000") int chunkSize) {
+        return rollupService.backfill(chunkSize);
+    }
+}
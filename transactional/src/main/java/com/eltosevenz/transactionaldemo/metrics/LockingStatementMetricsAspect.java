@@ -0,0 +1,45 @@
+package com.eltosevenz.transactionaldemo.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+//H2 does not report row lock waits, so the closest signal is the time of the repository calls that take
+//row locks: @Lock queries (SELECT ... FOR UPDATE) and @Modifying statements (conditional UPDATEs).
+//Metric: db.locking.statement (histogram, includes lock wait and execution) tagged with the repository method.
+@Aspect
+@Component
+public class LockingStatementMetricsAspect {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("execution(* com.eltosevenz.transactionaldemo.repository..*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (!method.isAnnotationPresent(Lock.class) && !method.isAnnotationPresent(Modifying.class)) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            Timer.builder("db.locking.statement")
+                    .description("Repository calls that take row locks, lock wait included")
+                    .tag("method", method.getDeclaringClass().getSimpleName() + "." + method.getName())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
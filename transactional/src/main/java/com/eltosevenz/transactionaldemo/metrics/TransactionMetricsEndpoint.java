@@ -0,0 +1,133 @@
+package com.eltosevenz.transactionaldemo.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+//GET /actuator/transactions: one-page view of where transaction time goes, so the hottest method
+//can be picked without querying the individual meters. Methods are sorted by total time spent.
+@Component
+@Endpoint(id = "transactions")
+public class TransactionMetricsEndpoint {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public Map<String, Object> transactions() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("methods", methods());
+        result.put("transactions", physicalTransactions());
+        result.put("lockingStatements", summarize(meterRegistry.find("db.locking.statement").timers(), "method"));
+        result.put("connectionPool", connectionPool());
+        return result;
+    }
+
+    private List<Map<String, Object>> methods() {
+        List<Map<String, Object>> methods = summarize(meterRegistry.find("tx.method").timers(), "method");
+        for (Map<String, Object> method : methods) {
+            Counter timeouts = meterRegistry.find("tx.timeouts").tag("method", (String) method.get("method")).counter();
+            method.put("timeouts", timeouts == null ? 0 : (long) timeouts.count());
+        }
+        return methods;
+    }
+
+    private List<Map<String, Object>> physicalTransactions() {
+        List<Map<String, Object>> transactions = summarize(meterRegistry.find("tx.duration").timers(), "name");
+        for (Map<String, Object> transaction : transactions) {
+            String name = (String) transaction.get("name");
+            Map<String, Long> outcomes = new TreeMap<>();
+            for (Counter counter : meterRegistry.find("tx.completions").tag("name", name).counters()) {
+                outcomes.put(counter.getId().getTag("outcome"), (long) counter.count());
+            }
+            transaction.put("outcomes", outcomes);
+        }
+        return transactions;
+    }
+
+    // Merges the timers that share a key tag (their other tags split them by outcome, isolation, ...)
+    private List<Map<String, Object>> summarize(Collection<Timer> timers, String keyTag) {
+        Map<String, List<Timer>> byKey = new TreeMap<>();
+        for (Timer timer : timers) {
+            byKey.computeIfAbsent(timer.getId().getTag(keyTag), k -> new ArrayList<>()).add(timer);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        byKey.forEach((key, group) -> {
+            long count = 0;
+            double totalMs = 0;
+            double maxMs = 0;
+            for (Timer timer : group) {
+                count += timer.count();
+                totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+                maxMs = Math.max(maxMs, timer.max(TimeUnit.MILLISECONDS));
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(keyTag, key);
+            row.put("count", count);
+            row.put("totalMs", round(totalMs));
+            row.put("meanMs", count == 0 ? 0 : round(totalMs / count));
+            row.put("maxMs", round(maxMs));
+            row.put("percentilesMs", percentiles(group));
+            rows.add(row);
+        });
+        rows.sort(Comparator.comparingDouble((Map<String, Object> row) -> (Double) row.get("totalMs")).reversed());
+        return rows;
+    }
+
+    // Client-side percentiles are per timer, so for a merged row report those of the busiest timer
+    private Map<String, Double> percentiles(List<Timer> group) {
+        Timer busiest = Collections.max(group, Comparator.comparingLong(Timer::count));
+        HistogramSnapshot snapshot = busiest.takeSnapshot();
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            percentiles.put("p" + percentileLabel(value.percentile()), round(value.value(TimeUnit.MILLISECONDS)));
+        }
+        return percentiles;
+    }
+
+    private Map<String, Object> connectionPool() {
+        Map<String, Object> pools = new TreeMap<>();
+        for (Gauge gauge : meterRegistry.find("hikaricp.connections.pending").gauges()) {
+            String pool = gauge.getId().getTag("pool");
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("active", gaugeValue("hikaricp.connections.active", pool));
+            stats.put("idle", gaugeValue("hikaricp.connections.idle", pool));
+            stats.put("pending", gauge.value());
+            Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", pool).timer();
+            if (acquire != null) {
+                stats.put("acquireCount", acquire.count());
+                stats.put("acquireMeanMs", round(acquire.mean(TimeUnit.MILLISECONDS)));
+                stats.put("acquireMaxMs", round(acquire.max(TimeUnit.MILLISECONDS)));
+            }
+            Counter timeouts = meterRegistry.find("hikaricp.connections.timeout").tag("pool", pool).counter();
+            stats.put("acquireTimeouts", timeouts == null ? 0 : (long) timeouts.count());
+            pools.put(pool, stats);
+        }
+        return pools;
+    }
+
+    private double gaugeValue(String name, String pool) {
+        Gauge gauge = meterRegistry.find(name).tag("pool", pool).gauge();
+        return gauge == null ? 0 : gauge.value();
+    }
+
+    // 0.5 -> "50", 0.999 -> "99.9"
+    private static String percentileLabel(double percentile) {
+        return BigDecimal.valueOf(percentile * 100).stripTrailingZeros().toPlainString();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
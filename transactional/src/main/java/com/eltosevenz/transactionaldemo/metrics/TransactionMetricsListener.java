@@ -0,0 +1,66 @@
+package com.eltosevenz.transactionaldemo.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+//Sees every physical transaction of the auto-configured transaction manager, declarative, TransactionTemplate
+//and programmatic alike (Spring Boot registers TransactionExecutionListener beans on it).
+//Metrics: tx.duration (begin to commit/rollback, histogram) and tx.completions, tagged with the transaction
+//name, isolation level, read-only flag and outcome (commit, rollback, commit_failed, rollback_failed).
+@Component
+public class TransactionMetricsListener implements TransactionExecutionListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private record Started(long startNanos, String isolation) {
+    }
+
+    private final Map<TransactionExecution, Started> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        if (beginFailure != null || !transaction.isNewTransaction()) {
+            return;
+        }
+        Integer isolation = TransactionSynchronizationManager.getCurrentTransactionIsolationLevel();
+        inFlight.put(transaction, new Started(System.nanoTime(), TransactionTags.isolation(isolation)));
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        complete(transaction, commitFailure == null ? "commit" : "commit_failed");
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution transaction, Throwable rollbackFailure) {
+        complete(transaction, rollbackFailure == null ? "rollback" : "rollback_failed");
+    }
+
+    private void complete(TransactionExecution transaction, String outcome) {
+        Started started = inFlight.remove(transaction);
+        if (started == null) {
+            return;
+        }
+        String name = TransactionTags.shortName(transaction.getTransactionName());
+        Timer.builder("tx.duration")
+                .description("Physical transaction time from begin to completion")
+                .tag("name", name)
+                .tag("isolation", started.isolation())
+                .tag("readOnly", String.valueOf(transaction.isReadOnly()))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - started.startNanos(), TimeUnit.NANOSECONDS);
+        meterRegistry.counter("tx.completions", "name", name, "outcome", outcome).increment();
+    }
+}
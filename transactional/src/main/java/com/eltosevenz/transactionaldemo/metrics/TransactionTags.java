@@ -0,0 +1,33 @@
+package com.eltosevenz.transactionaldemo.metrics;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+
+// Tag values shared by the transaction metrics
+final class TransactionTags {
+
+    private TransactionTags() {
+    }
+
+    // "com.x.service.ProductListService.updateStock" -> "ProductListService.updateStock"
+    static String shortName(String transactionName) {
+        if (transactionName == null || transactionName.isEmpty()) {
+            return "unnamed";
+        }
+        int method = transactionName.lastIndexOf('.');
+        int type = method > 0 ? transactionName.lastIndexOf('.', method - 1) : -1;
+        return transactionName.substring(type + 1);
+    }
+
+    static String isolation(Integer level) {
+        if (level == null || level == TransactionDefinition.ISOLATION_DEFAULT) {
+            return Isolation.DEFAULT.name();
+        }
+        for (Isolation isolation : Isolation.values()) {
+            if (isolation.value() == level) {
+                return isolation.name();
+            }
+        }
+        return String.valueOf(level);
+    }
+}
@@ -0,0 +1,9 @@
+package com.eltosevenz.transactionaldemo.model;
+
+// Body formats accepted by /api/product/import
+public enum ImportFormat {
+    // One product per line: code,name,stock. An optional header line may reorder the columns.
+    CSV,
+    // One JSON object per line: {"code": "...", "name": "...", "stock": 10}
+    NDJSON
+}
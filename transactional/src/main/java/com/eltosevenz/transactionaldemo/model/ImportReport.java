@@ -0,0 +1,66 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Result of a /api/product/import run. Rows are numbered from 1, header and blank lines excluded.
+// Only the first maxErrors rejected rows are listed, failed always has the full count.
+public class ImportReport {
+
+    public record RowError(long row, String code, String message) {
+    }
+
+    private long rows;
+    private long imported;
+    private long failed;
+    private int chunks;
+    private boolean errorsTruncated;
+    private final List<RowError> errors = new ArrayList<>();
+    private final int maxErrors;
+
+    public ImportReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public void rowRead() {
+        rows++;
+    }
+
+    public void chunkCommitted(int importedRows) {
+        imported += importedRows;
+        chunks++;
+    }
+
+    public void reject(long row, String code, String message) {
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(row, code, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,31 @@
+package com.eltosevenz.transactionaldemo.model;
+
+// One order in a /api/orders/batch request body
+public class OrderLine {
+    private String productCode;
+    private int quantity;
+
+    public OrderLine() {
+    }
+
+    public OrderLine(String productCode, int quantity) {
+        this.productCode = productCode;
+        this.quantity = quantity;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,7 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import java.util.Date;
+
+// Payload of the ORDER_PLACED events published through the outbox
+public record OrderPlacedEvent(long orderId, String productCode, int quantity, Date orderDate) {
+}
@@ -4,19 +4,25 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 
 import java.util.Date;
 
 @Entity
 public class OrderRequest {
+    // Pooled sequence ids instead of IDENTITY, so Hibernate can batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_request_seq")
+    @SequenceGenerator(name = "order_request_seq", sequenceName = "ORDER_REQUEST_SEQ", allocationSize = 50)
     private Long id;
 
     private String productCode;
     private int quantity;
     private Date orderDate;
 
+    // Set once the order is counted in SALES_ROLLUP; null for orders placed before rollups existed
+    private Boolean rolledUp;
+
     public Long getId() {
         return id;
     }
@@ -48,4 +54,12 @@ public class OrderRequest {
     public void setOrderDate(Date orderDate) {
         this.orderDate = orderDate;
     }
-}
\ No newline at end of file
+
+    public Boolean getRolledUp() {
+        return rolledUp;
+    }
+
+    public void setRolledUp(Boolean rolledUp) {
+        this.rolledUp = rolledUp;
+    }
+}
@@ -0,0 +1,49 @@
+package com.eltosevenz.transactionaldemo.model;
+
+// Outcome of one order in a /api/orders/batch response, in request order
+public class OrderResult {
+    private String productCode;
+    private int quantity;
+    private boolean accepted;
+    private Long orderId;
+    private String message;
+
+    public static OrderResult accepted(OrderLine line, OrderRequest order) {
+        OrderResult result = new OrderResult(line);
+        result.accepted = true;
+        result.orderId = order.getId();
+        result.message = "Order placed successfully!";
+        return result;
+    }
+
+    public static OrderResult rejected(OrderLine line, String message) {
+        OrderResult result = new OrderResult(line);
+        result.message = message;
+        return result;
+    }
+
+    private OrderResult(OrderLine line) {
+        this.productCode = line.getProductCode();
+        this.quantity = line.getQuantity();
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
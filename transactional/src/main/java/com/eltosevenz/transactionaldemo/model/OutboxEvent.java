@@ -0,0 +1,76 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// Event waiting to be published to Kafka, written in the transaction that produced it, see OutboxRelay.
+// The id gives the publication order; sentAt stays null until the broker acked the event.
+@Entity
+@Table(name = "ORDER_OUTBOX",
+        indexes = @Index(name = "IDX_ORDER_OUTBOX_UNSENT", columnList = "sentAt, id"))
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_seq")
+    @SequenceGenerator(name = "order_outbox_seq", sequenceName = "ORDER_OUTBOX_SEQ", allocationSize = 50)
+    private Long id;
+
+    private String eventType;
+
+    // Kafka record key; events with the same key keep their order on the topic
+    private String eventKey;
+
+    @Column(length = 1000)
+    private String payload;
+
+    private Instant createdAt;
+    private Instant sentAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getEventKey() {
+        return eventKey;
+    }
+
+    public void setEventKey(String eventKey) {
+        this.eventKey = eventKey;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(Instant sentAt) {
+        this.sentAt = sentAt;
+    }
+}
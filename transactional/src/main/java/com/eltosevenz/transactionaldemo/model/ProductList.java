@@ -3,16 +3,23 @@ package com.eltosevenz.transactionaldemo.model;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "PRODUCT_LIST")
+@Table(name = "PRODUCT_LIST",
+        uniqueConstraints = @UniqueConstraint(name = "UK_PRODUCT_LIST_CODE", columnNames = "code"))
 public class ProductList {
+    // Pooled sequence ids instead of IDENTITY, so Hibernate can batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_list_seq")
+    @SequenceGenerator(name = "product_list_seq", sequenceName = "PRODUCT_LIST_SEQ", allocationSize = 50)
     private Long id;
 
     private String code;
     private String name;
     private int stock;
 
+    // Optimistic locking, bumped on every update of the row
+    @Version
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -44,4 +51,12 @@ public class ProductList {
     public void setStock(int stock) {
         this.stock = stock;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
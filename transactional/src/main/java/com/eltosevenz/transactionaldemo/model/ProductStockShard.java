@@ -0,0 +1,50 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import jakarta.persistence.*;
+
+// One slice of a hot product's stock, see ShardedStockService
+@Entity
+@Table(name = "PRODUCT_STOCK_SHARD",
+        uniqueConstraints = @UniqueConstraint(name = "UK_PRODUCT_STOCK_SHARD", columnNames = {"productCode", "shardNo"}))
+public class ProductStockShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_stock_shard_seq")
+    @SequenceGenerator(name = "product_stock_shard_seq", sequenceName = "PRODUCT_STOCK_SHARD_SEQ", allocationSize = 50)
+    private Long id;
+
+    private String productCode;
+    private int shardNo;
+    private int stock;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public int getShardNo() {
+        return shardNo;
+    }
+
+    public void setShardNo(int shardNo) {
+        this.shardNo = shardNo;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void setStock(int stock) {
+        this.stock = stock;
+    }
+}
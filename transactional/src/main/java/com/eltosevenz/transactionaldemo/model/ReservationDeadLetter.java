@@ -0,0 +1,76 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.Date;
+
+// Reservation the ledger accepted but could never write behind, see StockReservationLedger.
+// Kept in the database so a confirmed order that failed is never only in memory; rows are left for an operator.
+@Entity
+@Table(name = "RESERVATION_DEAD_LETTER")
+public class ReservationDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_dead_letter_seq")
+    @SequenceGenerator(name = "reservation_dead_letter_seq", sequenceName = "RESERVATION_DEAD_LETTER_SEQ", allocationSize = 50)
+    private Long id;
+
+    private String productCode;
+    private int quantity;
+
+    // When the ledger accepted the order
+    private Date orderDate;
+
+    @Column(length = 1000)
+    private String reason;
+
+    private Instant deadLetteredAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Date getOrderDate() {
+        return orderDate;
+    }
+
+    public void setOrderDate(Date orderDate) {
+        this.orderDate = orderDate;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public Instant getDeadLetteredAt() {
+        return deadLetteredAt;
+    }
+
+    public void setDeadLetteredAt(Instant deadLetteredAt) {
+        this.deadLetteredAt = deadLetteredAt;
+    }
+}
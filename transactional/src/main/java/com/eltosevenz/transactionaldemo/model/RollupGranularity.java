@@ -0,0 +1,25 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// Time bucket sizes kept in SALES_ROLLUP
+public enum RollupGranularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime bucketOf(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+}
@@ -0,0 +1,87 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+// Units and orders sold per product per time bucket (bucket start in UTC)
+@Entity
+@Table(name = "SALES_ROLLUP")
+@IdClass(SalesRollup.Key.class)
+public class SalesRollup {
+    @Id
+    private String productCode;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private RollupGranularity granularity;
+
+    @Id
+    private LocalDateTime bucketStart;
+
+    private long units;
+    private long orderCount;
+
+    public static class Key implements Serializable {
+        private String productCode;
+        private RollupGranularity granularity;
+        private LocalDateTime bucketStart;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(productCode, key.productCode)
+                    && granularity == key.granularity
+                    && Objects.equals(bucketStart, key.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(productCode, granularity, bucketStart);
+        }
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(RollupGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
@@ -0,0 +1,74 @@
+package com.eltosevenz.transactionaldemo.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Sales not folded into SALES_ROLLUP yet, appended by the transaction that inserted the orders.
+// Rows are only ever inserted and deleted, so order transactions never wait on each other here.
+@Entity
+@Table(name = "SALES_ROLLUP_DELTA")
+public class SalesRollupDelta {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_rollup_delta_seq")
+    @SequenceGenerator(name = "sales_rollup_delta_seq", sequenceName = "SALES_ROLLUP_DELTA_SEQ", allocationSize = 50)
+    private Long id;
+
+    private String productCode;
+
+    @Enumerated(EnumType.STRING)
+    private RollupGranularity granularity;
+
+    private LocalDateTime bucketStart;
+
+    private long units;
+    private long orderCount;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(RollupGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
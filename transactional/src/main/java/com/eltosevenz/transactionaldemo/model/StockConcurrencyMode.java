@@ -0,0 +1,9 @@
+package com.eltosevenz.transactionaldemo.model;
+
+// How /api/product/update protects concurrent stock writes
+public enum StockConcurrencyMode {
+    // One SERIALIZABLE transaction per update, writers queue up behind each other
+    SERIALIZABLE,
+    // READ_COMMITTED with a @Version check on commit, conflicts are retried with backoff
+    OPTIMISTIC
+}
@@ -0,0 +1,10 @@
+package com.eltosevenz.transactionaldemo.model;
+
+// How placeOrder takes stock from PRODUCT_LIST
+public enum StockUpdateMode {
+    // Load the entity, check the stock in Java and save it back (two round trips, concurrent orders
+    // on the same product fail the @Version check instead of overselling)
+    READ_MODIFY_WRITE,
+    // Single conditional UPDATE ... SET stock = stock - ? WHERE code = ? AND stock >= ?
+    ATOMIC
+}
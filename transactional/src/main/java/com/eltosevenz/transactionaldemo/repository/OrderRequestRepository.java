@@ -1,6 +1,22 @@
 package com.eltosevenz.transactionaldemo.repository;
 
 import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface OrderRequestRepository extends JpaRepository<OrderRequest, Long> {}
\ No newline at end of file
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderRequestRepository extends JpaRepository<OrderRequest, Long> {
+
+    // Next chunk of orders not yet counted in the sales rollups, keyset by id
+    @Query("SELECT o FROM OrderRequest o WHERE o.id > :afterId AND (o.rolledUp IS NULL OR o.rolledUp = false) ORDER BY o.id")
+    List<OrderRequest> findNotRolledUpAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Modifying
+    @Query("UPDATE OrderRequest o SET o.rolledUp = true WHERE o.id IN :ids")
+    int markRolledUp(@Param("ids") Collection<Long> ids);
+}
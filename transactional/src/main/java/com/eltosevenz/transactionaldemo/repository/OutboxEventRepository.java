@@ -0,0 +1,25 @@
+package com.eltosevenz.transactionaldemo.repository;
+
+import com.eltosevenz.transactionaldemo.model.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Oldest events not yet published, in publication order
+    @Query("SELECT e FROM OutboxEvent e WHERE e.sentAt IS NULL ORDER BY e.id")
+    List<OutboxEvent> findUnsent(Limit limit);
+
+    long countBySentAtIsNull();
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.sentAt = :sentAt WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Instant sentAt);
+}
@@ -1,8 +1,43 @@
 package com.eltosevenz.transactionaldemo.repository;
 
 import com.eltosevenz.transactionaldemo.model.ProductList;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface ProductListRepository extends JpaRepository<ProductList, Long> {
     ProductList findByCode(String code);
-}
\ No newline at end of file
+
+    // Loads and row-locks every product of a batch in a single query, in code order,
+    // so two batches sharing products cannot lock them in opposite order and deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ProductList> findAllByCodeInOrderByCode(Collection<String> codes);
+
+    // Same without the row lock, for sharded products whose stock lives in PRODUCT_STOCK_SHARD
+    List<ProductList> findByCodeIn(Collection<String> codes);
+
+    // Check-and-decrement in one statement, returns 1 if the stock was taken and 0 if it was insufficient
+    @Modifying
+    @Query("UPDATE ProductList p SET p.stock = p.stock - :quantity, p.version = p.version + 1 WHERE p.code = :code AND p.stock >= :quantity")
+    int decrementStock(@Param("code") String code, @Param("quantity") int quantity);
+
+    boolean existsByCode(String code);
+
+    // Keyset (seek) page: the next `limit` products after the given id, using the primary key index
+    List<ProductList> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    // Forward-only cursor over the whole catalog, must be consumed inside a transaction and closed
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM ProductList p ORDER BY p.id")
+    Stream<ProductList> streamAllOrderById();
+}
@@ -0,0 +1,56 @@
+package com.eltosevenz.transactionaldemo.repository;
+
+import com.eltosevenz.transactionaldemo.model.ProductStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, Long> {
+
+    interface ShardTotal {
+        String getProductCode();
+
+        long getShards();
+
+        long getStock();
+    }
+
+    interface ShardStock {
+        int getShardNo();
+
+        int getStock();
+    }
+
+    // Conditional decrement of a single shard, 1 if taken and 0 if that shard cannot cover the quantity
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.stock = s.stock - :quantity " +
+            "WHERE s.productCode = :code AND s.shardNo = :shardNo AND s.stock >= :quantity")
+    int decrementShard(@Param("code") String code, @Param("shardNo") int shardNo, @Param("quantity") int quantity);
+
+    // Locks every shard of a product, always in shard order so concurrent callers cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ProductStockShard> findByProductCodeOrderByShardNo(String productCode);
+
+    // Same locks as above, but the values are read from the database and not from entities managed by the
+    // transaction, which decrementShard (a bulk UPDATE) leaves stale
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s.shardNo AS shardNo, s.stock AS stock FROM ProductStockShard s " +
+            "WHERE s.productCode = :code ORDER BY s.shardNo")
+    List<ShardStock> lockStock(@Param("code") String code);
+
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShard s WHERE s.productCode = :code")
+    long sumStock(@Param("code") String code);
+
+    @Query("SELECT s.productCode AS productCode, COUNT(s) AS shards, SUM(s.stock) AS stock " +
+            "FROM ProductStockShard s GROUP BY s.productCode")
+    List<ShardTotal> findTotals();
+
+    @Modifying
+    @Query("DELETE FROM ProductStockShard s WHERE s.productCode = :code")
+    int deleteByProductCode(@Param("code") String code);
+}
@@ -0,0 +1,11 @@
+package com.eltosevenz.transactionaldemo.repository;
+
+import com.eltosevenz.transactionaldemo.model.ReservationDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ReservationDeadLetterRepository extends JpaRepository<ReservationDeadLetter, Long> {
+
+    List<ReservationDeadLetter> findAllByOrderByIdAsc();
+}
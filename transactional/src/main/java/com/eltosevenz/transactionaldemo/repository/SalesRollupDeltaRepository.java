@@ -0,0 +1,21 @@
+package com.eltosevenz.transactionaldemo.repository;
+
+import com.eltosevenz.transactionaldemo.model.SalesRollupDelta;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SalesRollupDeltaRepository extends JpaRepository<SalesRollupDelta, Long> {
+
+    // Oldest deltas first, so a backlog is folded in the order it was written
+    List<SalesRollupDelta> findByOrderByIdAsc(Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM SalesRollupDelta d WHERE d.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,33 @@
+package com.eltosevenz.transactionaldemo.repository;
+
+import com.eltosevenz.transactionaldemo.model.RollupGranularity;
+import com.eltosevenz.transactionaldemo.model.SalesRollup;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollup.Key> {
+
+    interface ProductSales {
+        String getProductCode();
+
+        long getUnits();
+
+        long getOrderCount();
+    }
+
+    List<SalesRollup> findByProductCodeAndGranularityAndBucketStartBetweenOrderByBucketStart(
+            String productCode, RollupGranularity granularity, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT r.productCode AS productCode, SUM(r.units) AS units, SUM(r.orderCount) AS orderCount " +
+            "FROM SalesRollup r WHERE r.granularity = :granularity AND r.bucketStart BETWEEN :from AND :to " +
+            "GROUP BY r.productCode ORDER BY SUM(r.units) DESC")
+    List<ProductSales> findTopProducts(@Param("granularity") RollupGranularity granularity,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       Limit limit);
+}
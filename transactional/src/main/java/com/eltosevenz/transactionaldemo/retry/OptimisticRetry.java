@@ -0,0 +1,21 @@
+package com.eltosevenz.transactionaldemo.retry;
+
+import java.lang.annotation.*;
+
+//Retries a method that fails with an optimistic locking conflict (@Version mismatch).
+//Each attempt runs in its own transaction, so the method must be @Transactional itself
+//and must not be called from inside an outer transaction.
+//Attributes left at -1 fall back to the optimistic-retry.* properties.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface OptimisticRetry {
+
+    int maxAttempts() default -1;
+
+    long initialBackoffMs() default -1;
+
+    double multiplier() default -1;
+
+    long maxBackoffMs() default -1;
+}
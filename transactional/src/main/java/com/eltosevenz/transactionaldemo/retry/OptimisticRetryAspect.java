@@ -0,0 +1,85 @@
+package com.eltosevenz.transactionaldemo.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//Runs outside the transaction interceptor (higher precedence), so every retry gets a fresh
+//transaction and a fresh read of the @Version column.
+//Metrics: stock.optimistic.conflicts / retries / giveups, tagged with the method name.
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class OptimisticRetryAspect {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryAspect.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${optimistic-retry.max-attempts:5}")
+    private int defaultMaxAttempts;
+
+    @Value("${optimistic-retry.initial-backoff-ms:10}")
+    private long defaultInitialBackoffMs;
+
+    @Value("${optimistic-retry.multiplier:2.0}")
+    private double defaultMultiplier;
+
+    @Value("${optimistic-retry.max-backoff-ms:200}")
+    private long defaultMaxBackoffMs;
+
+    @Around("@annotation(retry)")
+    public Object retry(ProceedingJoinPoint joinPoint, OptimisticRetry retry) throws Throwable {
+        int maxAttempts = retry.maxAttempts() > 0 ? retry.maxAttempts() : defaultMaxAttempts;
+        long backoffMs = retry.initialBackoffMs() >= 0 ? retry.initialBackoffMs() : defaultInitialBackoffMs;
+        double multiplier = retry.multiplier() > 0 ? retry.multiplier() : defaultMultiplier;
+        long maxBackoffMs = retry.maxBackoffMs() >= 0 ? retry.maxBackoffMs() : defaultMaxBackoffMs;
+
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                counter("stock.optimistic.conflicts", method).increment();
+                if (attempt >= maxAttempts) {
+                    counter("stock.optimistic.giveups", method).increment();
+                    log.warn("{} gave up after {} optimistic locking conflicts", method, attempt);
+                    throw e;
+                }
+                counter("stock.optimistic.retries", method).increment();
+                // Full jitter keeps colliding writers from retrying in lockstep
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs + 1));
+                } catch (InterruptedException interrupted) {
+                    // Stop retrying, keep the interrupt for the caller and report the conflict that stopped us
+                    Thread.currentThread().interrupt();
+                    counter("stock.optimistic.giveups", method).increment();
+                    throw e;
+                }
+                backoffMs = nextBackoff(backoffMs, multiplier, maxBackoffMs);
+            }
+        }
+    }
+
+    // Upper bound of the next sleep; the sleep itself is drawn from [0, bound]
+    static long nextBackoff(long backoffMs, double multiplier, long maxBackoffMs) {
+        return Math.min(maxBackoffMs, (long) (backoffMs * multiplier));
+    }
+
+    private Counter counter(String name, String method) {
+        return meterRegistry.counter(name, "method", method);
+    }
+}
@@ -0,0 +1,153 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Group commit for placeOrder.
+//Callers enqueue orders into a bounded queue and get a CompletableFuture back. A single committer
+//thread drains the queue in micro-batches, closing a batch when it reaches maxBatchSize or when
+//maxWaitMs has passed since its first order, and commits the whole batch in one transaction.
+//Futures complete only after that commit. If the batch transaction itself fails, every order of the
+//batch is retried in its own transaction so one bad order cannot take the others down with it.
+public class GroupCommitOrderPipeline implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitOrderPipeline.class);
+
+    private final OrderRequestService orderService;
+    private final BlockingQueue<PendingOrder> queue;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Thread committer;
+    private volatile boolean running = true;
+    // Held by submit from the running check to the offer and by close to clear running,
+    // so no order can land in the queue once the committer may have taken its last look at it
+    private final ReentrantLock submitLock = new ReentrantLock();
+
+    private record PendingOrder(OrderLine line, CompletableFuture<String> result) {
+    }
+
+    public GroupCommitOrderPipeline(OrderRequestService orderService, int queueCapacity, int maxBatchSize, long maxWaitMs) {
+        this.orderService = orderService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.committer = new Thread(this::run, "order-group-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    public CompletableFuture<String> submit(String productCode, int quantity) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        submitLock.lock();
+        try {
+            if (!running) {
+                result.completeExceptionally(shutDown());
+            } else if (!queue.offer(new PendingOrder(new OrderLine(productCode, quantity), result))) {
+                result.completeExceptionally(new RuntimeException("Order queue is full, try again later"));
+            }
+        } finally {
+            submitLock.unlock();
+        }
+        return result;
+    }
+
+    private void run() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Take whatever is already queued without waiting, then wait out the window
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingOrder> batch) {
+        List<OrderLine> lines = new ArrayList<>(batch.size());
+        for (PendingOrder order : batch) {
+            lines.add(order.line());
+        }
+
+        List<OrderResult> results;
+        try {
+            results = orderService.placeOrderGroup(lines);
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} orders failed, placing them one by one", batch.size(), e);
+            for (PendingOrder order : batch) {
+                try {
+                    order.result().complete(orderService.placeOrder(
+                            order.line().getProductCode(), order.line().getQuantity(), StockUpdateMode.ATOMIC));
+                } catch (RuntimeException single) {
+                    order.result().completeExceptionally(single);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            OrderResult result = results.get(i);
+            if (result.isAccepted()) {
+                batch.get(i).result().complete(result.getMessage());
+            } else {
+                batch.get(i).result().completeExceptionally(new RuntimeException(result.getMessage()));
+            }
+        }
+    }
+
+    // Stops accepting orders and commits everything already queued
+    @Override
+    public void close() throws InterruptedException {
+        submitLock.lock();
+        try {
+            running = false;
+        } finally {
+            submitLock.unlock();
+        }
+        committer.join(TimeUnit.SECONDS.toMillis(30));
+        // Whatever the committer left behind (it timed out or was interrupted) fails instead of hanging its request
+        List<PendingOrder> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            log.warn("Order pipeline closed with {} uncommitted orders, failing them", left.size());
+        }
+        for (PendingOrder order : left) {
+            order.result().completeExceptionally(shutDown());
+        }
+    }
+
+    private static IllegalStateException shutDown() {
+        return new IllegalStateException("Order pipeline is shut down");
+    }
+}
@@ -0,0 +1,124 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class OrderBatchService {
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private StockReservationLedger reservationLedger;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    @Autowired
+    private SalesRollupService salesRollups;
+
+    @Autowired
+    private OrderOutbox outbox;
+
+    @Value("${orders.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    //Places many orders in one transaction.
+    //Stock for every product code is loaded (and row-locked) with one query, orders are checked
+    //in request order against the remaining stock, and the accepted OrderRequest rows are inserted as
+    //JDBC batches thanks to the pooled sequence ids. Rejected orders do not roll back the others.
+    //With the reservation ledger enabled its counters are checked first, they also cover the reservations
+    //that are not written to PRODUCT_LIST yet.
+    @Transactional
+    public List<OrderResult> placeOrders(List<OrderLine> lines) {
+        if (lines.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + lines.size() + " exceeds the limit of " + maxBatchSize);
+        }
+
+        // Sharded products take their stock with conditional UPDATEs on the shards. Locking their PRODUCT_LIST
+        // row as well would serialize every batch that orders a hot product, which is what sharding avoids.
+        Map<Boolean, Set<String>> codesBySharding = lines.stream().map(OrderLine::getProductCode)
+                .collect(Collectors.partitioningBy(shardedStock::isSharded, Collectors.toSet()));
+        Map<String, ProductList> products = new HashMap<>();
+        if (!codesBySharding.get(false).isEmpty()) {
+            productRepository.findAllByCodeInOrderByCode(codesBySharding.get(false)).forEach(p -> products.put(p.getCode(), p));
+        }
+        if (!codesBySharding.get(true).isEmpty()) {
+            productRepository.findByCodeIn(codesBySharding.get(true)).forEach(p -> products.put(p.getCode(), p));
+        }
+
+        List<OrderResult> results = new ArrayList<>(lines.size());
+        List<OrderRequest> orders = new ArrayList<>(lines.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(lines.size());
+        Date orderDate = new Date();
+
+        for (OrderLine line : lines) {
+            ProductList product = products.get(line.getProductCode());
+            if (product == null) {
+                results.add(OrderResult.rejected(line, "Product not found: " + line.getProductCode()));
+            } else if (line.getQuantity() <= 0) {
+                results.add(OrderResult.rejected(line, "Quantity must be positive"));
+            } else if (!takeStock(product, line.getQuantity())) {
+                results.add(OrderResult.rejected(line, "Insufficient stock for product: " + line.getProductCode()));
+            } else {
+                OrderRequest order = new OrderRequest();
+                order.setProductCode(line.getProductCode());
+                order.setQuantity(line.getQuantity());
+                order.setOrderDate(orderDate);
+                orders.add(order);
+                acceptedIndexes.add(results.size());
+                results.add(null);
+            }
+        }
+
+        salesRollups.record(orders);
+        orderRepository.saveAll(orders);
+        outbox.record(orders);
+        for (int i = 0; i < orders.size(); i++) {
+            int index = acceptedIndexes.get(i);
+            results.set(index, OrderResult.accepted(lines.get(index), orders.get(i)));
+        }
+
+        products.keySet().forEach(productCache::evictAfterCompletion);
+        return results;
+    }
+
+    private boolean takeStock(ProductList product, int quantity) {
+        String code = product.getCode();
+        if (!reservationLedger.takeInTransaction(code, quantity)) {
+            return false;
+        }
+        boolean taken;
+        if (shardedStock.isSharded(code)) {
+            taken = shardedStock.takeStock(code, quantity);
+        } else if (product.getStock() >= quantity) {
+            // Managed entity, the decrement is flushed as one UPDATE per product on commit
+            product.setStock(product.getStock() - quantity);
+            taken = true;
+        } else {
+            taken = false;
+        }
+        if (!taken) {
+            reservationLedger.giveBackInTransaction(code, quantity);
+        }
+        return taken;
+    }
+}
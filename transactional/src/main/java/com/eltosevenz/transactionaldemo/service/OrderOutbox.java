@@ -0,0 +1,115 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderPlacedEvent;
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.OutboxEvent;
+import com.eltosevenz.transactionaldemo.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+//Transactional outbox for order events (orders.outbox.enabled).
+//record() runs inside the transaction that inserts the orders, so an ORDER_PLACED event exists exactly when
+//its order committed. Publishing to Kafka is left to OutboxRelay, off the request path.
+@Service
+public class OrderOutbox {
+
+    public static final String ORDER_PLACED = "ORDER_PLACED";
+
+    private static final Object PENDING_IN_TRANSACTION = new Object();
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObjectProvider<OutboxRelay> relay;
+
+    @Value("${orders.outbox.enabled:false}")
+    private boolean enabled;
+
+    //Call after the orders are saved and their stock is taken, their ids are part of the event.
+    //Events are keyed by product code, so the events of one product stay in order on the topic.
+    //OutboxRelay publishes in id order, but pooled ids are handed out on insert. Sharded orders share no row,
+    //so inserting here could give the later of two orders the lower id. Inside a transaction the events are
+    //only inserted right before commit, after everything the transaction reads: a transaction that saw
+    //another one's orders gets its ids after that one committed, and two transactions whose ids cross
+    //never saw each other, so id order stays a valid commit order per product without a lock.
+    public void record(Collection<OrderRequest> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<OutboxEvent> events = new ArrayList<>(orders.size());
+        for (OrderRequest order : orders) {
+            OutboxEvent event = new OutboxEvent();
+            event.setEventType(ORDER_PLACED);
+            event.setEventKey(order.getProductCode());
+            event.setPayload(toJson(new OrderPlacedEvent(order.getId(), order.getProductCode(),
+                    order.getQuantity(), order.getOrderDate())));
+            event.setCreatedAt(now);
+            events.add(event);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outboxRepository.saveAll(events);
+            return;
+        }
+        pendingInTransaction().addAll(events);
+    }
+
+    public void record(OrderRequest order) {
+        record(List.of(order));
+    }
+
+    // One list per transaction, inserted by beforeCommit so a failing insert still rolls the orders back.
+    // The relay polls anyway; the afterCommit nudge only saves the wait for its next poll.
+    @SuppressWarnings("unchecked")
+    private List<OutboxEvent> pendingInTransaction() {
+        List<OutboxEvent> pending = (List<OutboxEvent>) TransactionSynchronizationManager.getResource(PENDING_IN_TRANSACTION);
+        if (pending != null) {
+            return pending;
+        }
+        List<OutboxEvent> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(PENDING_IN_TRANSACTION, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                outboxRepository.saveAll(created);
+            }
+
+            @Override
+            public void afterCommit() {
+                OutboxRelay outboxRelay = relay.getIfAvailable();
+                if (outboxRelay != null) {
+                    outboxRelay.wakeUp();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_IN_TRANSACTION);
+            }
+        });
+        return created;
+    }
+
+    private String toJson(OrderPlacedEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + event, e);
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package com.eltosevenz.transactionaldemo.service;
 
+import com.eltosevenz.transactionaldemo.model.OrderLine;
 import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
 import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
 import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
 import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class OrderRequestService {
@@ -19,9 +28,47 @@ public class OrderRequestService {
     @Autowired
     private ProductListRepository productRepository;
 
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    @Autowired
+    private SalesRollupService salesRollups;
+
+    @Autowired
+    private OrderOutbox outbox;
+
+    // Lazy: the ledger writes its reservations behind through this service
+    @Lazy
+    @Autowired
+    private StockReservationLedger reservationLedger;
+
+    @Value("${orders.stock-update-mode:READ_MODIFY_WRITE}")
+    private StockUpdateMode stockUpdateMode;
+
     @Transactional
     public String placeOrder(String productCode, int quantity) {
-        ProductList product = productRepository.findByCode(productCode);
+        return placeOrder(productCode, quantity, stockUpdateMode);
+    }
+
+    @Transactional
+    public String placeOrder(String productCode, int quantity, StockUpdateMode mode) {
+        // A negative quantity would pass every stock check and add stock instead of taking it
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        // Hot products keep their stock in shards, whatever the mode
+        if (mode == StockUpdateMode.ATOMIC || shardedStock.isSharded(productCode)) {
+            return placeOrderAtomic(productCode, quantity);
+        }
+
+        // With the ledger enabled, part of the stock may already be promised to reservations not written yet
+        if (!reservationLedger.takeInTransaction(productCode, quantity)) {
+            throw new RuntimeException("Insufficient stock for product: " + productCode);
+        }
+        ProductList product = productCache.findByCode(productCode);
 
         // Check if enough stock is available
         if (product.getStock() < quantity) {
@@ -33,12 +80,139 @@ public class OrderRequestService {
         order.setProductCode(productCode);
         order.setQuantity(quantity);
         order.setOrderDate(new Date());
+        salesRollups.record(order);
         orderRepository.save(order);
+        outbox.record(order);
 
-        // Update stock
+        // Update stock. ProductList has a @Version column: if another order changed the row since the read,
+        // the flush fails with ObjectOptimisticLockingFailureException and this order is rolled back (not retried)
         product.setStock(product.getStock() - quantity);
-        productRepository.save(product);
+        // The cached row is updated rather than evicted, so the next order for this product still hits the cache
+        productCache.updateAfterCommit(productRepository.save(product));
+
+        return "Order placed successfully!";
+    }
+
+    //The stock check and decrement happen in one conditional UPDATE, so concurrent orders
+    //can never oversell and the order costs a single round trip for the stock.
+    private String placeOrderAtomic(String productCode, int quantity) {
+        productCache.evictAfterCompletion(productCode);
+        // Rolled back with the order if the database cannot cover it after all
+        if (!reservationLedger.takeInTransaction(productCode, quantity)) {
+            throw new RuntimeException("Insufficient stock for product: " + productCode);
+        }
+        if (!takeStock(productCode, quantity)) {
+            // Only the failure path pays for telling "missing" apart from "not enough"
+            if (!productRepository.existsByCode(productCode)) {
+                throw new IllegalArgumentException("Product not found: " + productCode);
+            }
+            throw new RuntimeException("Insufficient stock for product: " + productCode);
+        }
+
+        OrderRequest order = new OrderRequest();
+        order.setProductCode(productCode);
+        order.setQuantity(quantity);
+        order.setOrderDate(new Date());
+        salesRollups.record(order);
+        orderRepository.save(order);
+        outbox.record(order);
 
         return "Order placed successfully!";
     }
-}
\ No newline at end of file
+
+    //Write-behind target of StockReservationLedger.
+    //Stock was already reserved in memory, so this only persists the orders and applies
+    //the summed decrement once per product code, all in one transaction.
+    @Transactional
+    public void persistReservations(List<OrderRequest> orders) {
+        salesRollups.record(orders);
+        orderRepository.saveAll(orders);
+
+        Map<String, Integer> reservedByCode = new LinkedHashMap<>();
+        for (OrderRequest order : orders) {
+            reservedByCode.merge(order.getProductCode(), order.getQuantity(), Integer::sum);
+        }
+        reservedByCode.forEach((code, reserved) -> {
+            productCache.evictAfterCompletion(code);
+            // The ledger counter was loaded from the committed stock, but a stock update since then can leave
+            // less than was reserved. Failing the whole batch hands it to the ledger's retry and dead-letter path.
+            if (shardedStock.isSharded(code)) {
+                if (!shardedStock.takeStock(code, reserved)) {
+                    throw new RuntimeException("Insufficient stock for product: " + code);
+                }
+                return;
+            }
+            ProductList product = productRepository.findByCode(code);
+            if (product.getStock() < reserved) {
+                throw new RuntimeException("Insufficient stock for product: " + code);
+            }
+            product.setStock(product.getStock() - reserved);
+            productRepository.save(product);
+        });
+        outbox.record(orders);
+    }
+
+    //Group-commit target of GroupCommitOrderPipeline: many independent orders, one transaction.
+    //Each order takes its stock with the conditional UPDATE, so an order without enough stock is
+    //rejected on its own and never rolls back the others.
+    @Transactional
+    public List<OrderResult> placeOrderGroup(List<OrderLine> lines) {
+        List<OrderResult> results = new ArrayList<>(lines.size());
+        List<OrderRequest> orders = new ArrayList<>(lines.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(lines.size());
+        Date orderDate = new Date();
+
+        for (OrderLine line : lines) {
+            productCache.evictAfterCompletion(line.getProductCode());
+            String rejection = line.getQuantity() <= 0 ? "Quantity must be positive" : takeLineStock(line);
+            if (rejection != null) {
+                results.add(OrderResult.rejected(line, rejection));
+            } else {
+                OrderRequest order = new OrderRequest();
+                order.setProductCode(line.getProductCode());
+                order.setQuantity(line.getQuantity());
+                order.setOrderDate(orderDate);
+                orders.add(order);
+                acceptedIndexes.add(results.size());
+                results.add(null);
+            }
+        }
+
+        salesRollups.record(orders);
+        orderRepository.saveAll(orders);
+        outbox.record(orders);
+        for (int i = 0; i < orders.size(); i++) {
+            int index = acceptedIndexes.get(i);
+            results.set(index, OrderResult.accepted(lines.get(index), orders.get(i)));
+        }
+        return results;
+    }
+
+    // Null once the stock is taken, otherwise why the line is rejected. The ledger's counter goes first and gets
+    // its quantity back if the database cannot cover the line, the group transaction carries on without it.
+    private String takeLineStock(OrderLine line) {
+        String code = line.getProductCode();
+        try {
+            if (!reservationLedger.takeInTransaction(code, line.getQuantity())) {
+                return "Insufficient stock for product: " + code;
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (takeStock(code, line.getQuantity())) {
+            return null;
+        }
+        reservationLedger.giveBackInTransaction(code, line.getQuantity());
+        return productRepository.existsByCode(code)
+                ? "Insufficient stock for product: " + code
+                : "Product not found: " + code;
+    }
+
+    // Conditional decrement on the product row, or on its shards for a sharded product
+    private boolean takeStock(String productCode, int quantity) {
+        if (shardedStock.isSharded(productCode)) {
+            return shardedStock.takeStock(productCode, quantity);
+        }
+        return productRepository.decrementStock(productCode, quantity) == 1;
+    }
+}
@@ -0,0 +1,140 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OutboxEvent;
+import com.eltosevenz.transactionaldemo.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+//Publishes the ORDER_OUTBOX rows to Kafka.
+//A single relay thread reads the oldest unsent events in batches, sends them with the idempotent producer
+//(spring.kafka.producer.* in application.properties), waits for the acks and then marks the acked events sent.
+//Only the acked prefix of a batch is marked: after a failure the relay starts again from the first unacked event,
+//so events leave in id order. Delivery is at-least-once; a crash between the ack and the update sends the batch
+//again, and consumers drop duplicates by the eventId header.
+//Runs one relay per database; several application instances on one database would publish the same rows.
+public class OutboxRelay implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate markSentTransaction;
+    private final String topic;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long sendTimeoutMs;
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final Counter published;
+    private final Thread relay;
+    private volatile boolean running = true;
+    private volatile long lagMs;
+
+    public OutboxRelay(OutboxEventRepository outboxRepository, KafkaTemplate<String, String> kafkaTemplate,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       String topic, int batchSize, long pollIntervalMs, long sendTimeoutMs) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.markSentTransaction = new TransactionTemplate(transactionManager);
+        this.markSentTransaction.setName("OutboxRelay.markSent");
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.published = Counter.builder("orders.outbox.published")
+                .description("Outbox events acked by the broker")
+                .register(meterRegistry);
+        Gauge.builder("orders.outbox.lag", () -> lagMs)
+                .description("Age of the oldest unsent outbox event at the last poll")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.relay = new Thread(this::run, "order-outbox-relay");
+        this.relay.setDaemon(true);
+        this.relay.start();
+    }
+
+    // Called after a transaction that wrote events commits
+    public void wakeUp() {
+        wakeUp.release();
+    }
+
+    private void run() {
+        while (running) {
+            int sent;
+            try {
+                sent = publishBatch();
+            } catch (Exception e) {
+                log.error("Outbox relay failed, retrying in {} ms", pollIntervalMs, e);
+                sent = 0;
+            }
+            if (sent == batchSize) {
+                // Probably more waiting, go again right away
+                continue;
+            }
+            try {
+                wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeUp.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Sends the oldest unsent events and marks the acked ones; returns how many were marked
+    int publishBatch() throws InterruptedException {
+        List<OutboxEvent> events = outboxRepository.findUnsent(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            lagMs = 0;
+            return 0;
+        }
+        lagMs = Duration.between(events.get(0).getCreatedAt(), Instant.now()).toMillis();
+
+        List<CompletableFuture<SendResult<String, String>>> acks = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            ProducerRecord<String, String> record = new ProducerRecord<>(topic, event.getEventKey(), event.getPayload());
+            record.headers().add("eventId", String.valueOf(event.getId()).getBytes(StandardCharsets.UTF_8));
+            record.headers().add("eventType", event.getEventType().getBytes(StandardCharsets.UTF_8));
+            acks.add(kafkaTemplate.send(record));
+        }
+
+        List<Long> acked = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                acks.get(i).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Outbox event {} was not acked, resending from there on the next poll", events.get(i).getId(), e);
+                break;
+            }
+            acked.add(events.get(i).getId());
+        }
+        if (!acked.isEmpty()) {
+            Instant sentAt = Instant.now();
+            markSentTransaction.executeWithoutResult(status -> outboxRepository.markSent(acked, sentAt));
+            published.increment(acked.size());
+        }
+        return acked.size();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        wakeUp();
+        relay.join(TimeUnit.SECONDS.toMillis(30));
+    }
+}
@@ -0,0 +1,133 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+//Read-through cache for ProductListRepository.findByCode, bounded by size and TTL.
+//Entries are snapshots: every read hands out a fresh detached copy, so callers may modify
+//and save it (the @Version column catches a stale copy) without touching the cached one.
+//Every writer of PRODUCT_LIST must call evictAfterCompletion(code) or, if it holds the written entity,
+//updateAfterCommit(product). Loads go through Caffeine's per-key compute, so an eviction racing with a load
+//waits for it and removes the old value.
+@Component
+public class ProductCache {
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${products.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${products.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${products.cache.ttl:5m}")
+    private Duration ttl;
+
+    private LoadingCache<String, ProductList> cache;
+    private Timer loadTimer;
+
+    @PostConstruct
+    void init() {
+        loadTimer = Timer.builder("product.cache.load")
+                .description("Time to load a product by code on a cache miss")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(code -> loadTimer.record(() -> copyOf(productRepository.findByCode(code))));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+        Gauge.builder("product.cache.hit.ratio", cache, c -> c.stats().hitRate()).register(meterRegistry);
+        Gauge.builder("product.cache.miss.ratio", cache, c -> c.stats().missRate()).register(meterRegistry);
+    }
+
+    public ProductList findByCode(String code) {
+        if (!enabled) {
+            return productRepository.findByCode(code);
+        }
+        ProductList cached = cache.get(code);
+        return copyOf(cached);
+    }
+
+    // Drops the entry once the surrounding transaction completes (commit or rollback), or immediately if there is none
+    public void evictAfterCompletion(String code) {
+        if (!enabled || code == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(code);
+                }
+            });
+        } else {
+            cache.invalidate(code);
+        }
+    }
+
+    //Replaces the cached snapshot with the committed row instead of dropping it, so the next order for the
+    //code is still a hit. Only an entry holding an older @Version is replaced: an absent entry stays absent
+    //(a concurrent writer may have evicted it after committing a newer row), and a newer one is kept.
+    //On rollback the entry is evicted, as it may be the stale read that made the write fail.
+    public void updateAfterCommit(ProductList product) {
+        if (!enabled || product == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(product.getCode());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    cache.invalidate(product.getCode());
+                    return;
+                }
+                // The managed entity carries the version assigned on flush
+                ProductList committed = copyOf(product);
+                cache.asMap().computeIfPresent(product.getCode(), (code, cached) ->
+                        cached.getVersion() < committed.getVersion() ? committed : cached);
+            }
+        });
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static ProductList copyOf(ProductList product) {
+        if (product == null) {
+            return null;
+        }
+        ProductList copy = new ProductList();
+        copy.setId(product.getId());
+        copy.setCode(product.getCode());
+        copy.setName(product.getName());
+        copy.setStock(product.getStock());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,268 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ImportFormat;
+import com.eltosevenz.transactionaldemo.model.ImportReport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+//Bulk catalog import. The body is read line by line and inserted in chunks of chunkSize rows,
+//each chunk one JDBC batch in its own transaction, so the heap holds one chunk at a time and a failure
+//only loses the current chunk. Rows are validated like createProduct (no negative stock) and must have
+//a code that is new to the catalog; rejected rows go to the report and do not stop the import.
+//New codes cannot be in ProductCache or the reservation ledger yet, so nothing needs evicting.
+@Service
+public class ProductImportService {
+
+    // Same sequence as Hibernate, see data.sql
+    private static final String INSERT = "INSERT INTO PRODUCT_LIST (id, code, name, stock, version) " +
+            "VALUES (NEXT VALUE FOR PRODUCT_LIST_SEQ, ?, ?, ?, 0)";
+
+    private static final List<String> DEFAULT_COLUMNS = List.of("code", "name", "stock");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${products.import.max-errors:1000}")
+    private int maxErrors;
+
+    private record ImportRow(long row, String code, String name, Integer stock) {
+    }
+
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+    private TransactionTemplate chunkTransaction;
+
+    @PostConstruct
+    void init() {
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        chunkTransaction = new TransactionTemplate(transactionManager);
+        chunkTransaction.setName("ProductImportService.importChunk");
+    }
+
+    public ImportReport importProducts(InputStream body, ImportFormat format, int chunkSize) throws IOException {
+        ImportReport report = new ImportReport(maxErrors);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+        List<String> columns = null;
+        long row = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == ImportFormat.CSV && columns == null) {
+                columns = headerOf(line);
+                if (columns != null) {
+                    continue;
+                }
+                columns = DEFAULT_COLUMNS;
+            }
+            row++;
+            report.rowRead();
+            try {
+                ImportRow parsed = format == ImportFormat.CSV ? parseCsv(row, line, columns) : parseJson(row, line);
+                String error = validate(parsed);
+                if (error != null) {
+                    report.reject(row, parsed.code(), error);
+                    continue;
+                }
+                chunk.add(parsed);
+            } catch (JsonProcessingException e) {
+                report.reject(row, null, "Malformed row: " + e.getOriginalMessage());
+                continue;
+            } catch (IllegalArgumentException e) {
+                report.reject(row, null, "Malformed row: " + e.getMessage());
+                continue;
+            }
+            if (chunk.size() == chunkSize) {
+                insertChunk(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insertChunk(chunk, report);
+        }
+        return report;
+    }
+
+    // Same rule as createProduct, plus a code since the import relies on codes being unique
+    private static String validate(ImportRow row) {
+        if (row.code() == null || row.code().isBlank()) {
+            return "Code is required.";
+        }
+        if (row.stock() == null) {
+            return "Stock is required.";
+        }
+        if (row.stock() < 0) {
+            return "Stock cannot be negative.";
+        }
+        return null;
+    }
+
+    //Codes already in the catalog (or earlier in the chunk) are rejected before the batch is sent.
+    //If the batch still fails, e.g. a concurrent insert of the same code, the chunk is retried row by row.
+    private void insertChunk(List<ImportRow> chunk, ImportReport report) {
+        Map<Long, String> rejected = new LinkedHashMap<>();
+        List<ImportRow> inserted = new ArrayList<>(chunk.size());
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                Set<String> taken = existingCodes(chunk);
+                for (ImportRow row : chunk) {
+                    if (!taken.add(row.code())) {
+                        rejected.put(row.row(), "Product code already exists: " + row.code());
+                    } else {
+                        inserted.add(row);
+                    }
+                }
+                jdbcTemplate.batchUpdate(INSERT, inserted, inserted.size(), (ps, row) -> {
+                    ps.setString(1, row.code());
+                    ps.setString(2, row.name());
+                    ps.setInt(3, row.stock());
+                });
+            });
+        } catch (DataAccessException e) {
+            insertOneByOne(chunk, report);
+            return;
+        }
+        for (ImportRow row : chunk) {
+            String error = rejected.get(row.row());
+            if (error != null) {
+                report.reject(row.row(), row.code(), error);
+            }
+        }
+        report.chunkCommitted(inserted.size());
+    }
+
+    private void insertOneByOne(List<ImportRow> chunk, ImportReport report) {
+        int imported = 0;
+        for (ImportRow row : chunk) {
+            try {
+                chunkTransaction.executeWithoutResult(status ->
+                        jdbcTemplate.update(INSERT, row.code(), row.name(), row.stock()));
+                imported++;
+            } catch (DataIntegrityViolationException e) {
+                // Anything else is not about the row (connection, database down, ...) and aborts the import
+                report.reject(row.row(), row.code(), "Insert failed: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+        report.chunkCommitted(imported);
+    }
+
+    private Set<String> existingCodes(List<ImportRow> chunk) {
+        List<String> codes = chunk.stream().map(ImportRow::code).toList();
+        return new HashSet<>(namedJdbcTemplate.queryForList(
+                "SELECT code FROM PRODUCT_LIST WHERE code IN (:codes)", Map.of("codes", codes), String.class));
+    }
+
+    private ImportRow parseJson(long row, String line) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(line);
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+        JsonNode stock = node.get("stock");
+        if (stock != null && !stock.isNull() && !stock.canConvertToInt()) {
+            throw new IllegalArgumentException("stock is not an integer");
+        }
+        return new ImportRow(row, text(node.get("code")), text(node.get("name")),
+                stock == null || stock.isNull() ? null : stock.intValue());
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    private static ImportRow parseCsv(long row, String line, List<String> columns) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != columns.size()) {
+            throw new IllegalArgumentException("expected " + columns.size() + " fields, found " + fields.size());
+        }
+        String code = null;
+        String name = null;
+        Integer stock = null;
+        for (int i = 0; i < columns.size(); i++) {
+            String value = fields.get(i).isEmpty() ? null : fields.get(i);
+            switch (columns.get(i)) {
+                case "code" -> code = value;
+                case "name" -> name = value;
+                case "stock" -> {
+                    try {
+                        stock = value == null ? null : Integer.valueOf(value.trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("stock is not an integer: " + value);
+                    }
+                }
+                default -> {
+                    // unknown columns are ignored
+                }
+            }
+        }
+        return new ImportRow(row, code, name, stock);
+    }
+
+    // The first line is a header if it names the code column
+    private static List<String> headerOf(String line) {
+        try {
+            List<String> columns = splitCsv(line).stream().map(f -> f.trim().toLowerCase(Locale.ROOT)).toList();
+            return columns.contains("code") ? columns : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    //RFC 4180 fields on a single line: quoted fields may contain commas and doubled quotes,
+    //but not line breaks.
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
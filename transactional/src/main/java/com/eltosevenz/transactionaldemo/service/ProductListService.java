@@ -3,7 +3,11 @@ package com.eltosevenz.transactionaldemo.service;
 import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
 import com.eltosevenz.transactionaldemo.model.ProductList;
 import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import com.eltosevenz.transactionaldemo.retry.OptimisticRetry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -13,6 +17,9 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ProductListService {
@@ -23,15 +30,29 @@ public class ProductListService {
     @Autowired
     private PlatformTransactionManager transactionManager;
 
+    @Autowired
+    private StockReservationLedger reservationLedger;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     // Rollback on Custom Exceptions. Even norollbackFor can use as opposite
     @Transactional(rollbackFor = InvalidStockException.class)
     public ProductList createProduct(ProductList product) throws InvalidStockException {
         productRepository.save(product);
+        productCache.evictAfterCompletion(product.getCode());
 
         // Simulate a custom exception
         if (product.getStock() < 0) {
             throw new InvalidStockException("Stock cannot be negative.");
         }
+        reservationLedger.evictAfterCommit(product.getCode());
 
         return product;
     }
@@ -46,8 +67,25 @@ public class ProductListService {
         ProductList product = productRepository.findById(productId).orElseThrow(() ->
                 new IllegalArgumentException("Product not found"));
 
-        product.setStock(stock);
-        productRepository.save(product);
+        setStock(product, stock);
+        reservationLedger.evictAfterCommit(product.getCode());
+        productCache.evictAfterCompletion(product.getCode());
+
+        return product;
+    }
+
+    //Optimistic alternative to updateStock.
+    //No row is locked while reading; the @Version check on commit detects a concurrent writer
+    //and @OptimisticRetry re-runs the whole transaction with backoff.
+    @OptimisticRetry
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public ProductList updateStockOptimistic(Long productId, int stock) {
+        ProductList product = productRepository.findById(productId).orElseThrow(() ->
+                new IllegalArgumentException("Product not found"));
+
+        setStock(product, stock);
+        reservationLedger.evictAfterCommit(product.getCode());
+        productCache.evictAfterCompletion(product.getCode());
 
         return product;
     }
@@ -57,7 +95,32 @@ public class ProductListService {
     //to optimize performance in certain scenarios.
     @Transactional(timeout = 5, readOnly = true)
     public List<ProductList> getAllProducts() {
-        return productRepository.findAll();
+        return withShardTotals(productRepository.findAll());
+    }
+
+    //Keyset pagination: seeks past the last id of the previous page instead of using OFFSET,
+    //so every page costs the same no matter how deep into the catalog it is.
+    @Transactional(timeout = 5, readOnly = true)
+    public List<ProductList> getProductPage(long afterId, int size) {
+        return withShardTotals(productRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size)));
+    }
+
+    //Streams the whole catalog through a forward-only cursor.
+    //Each row is detached once handed over, so the persistence context (and the heap) stays flat.
+    //No timeout here, the duration depends on how fast the client reads.
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<ProductList> consumer) {
+        Map<String, Integer> shardTotals = shardedStock.totalsByCode();
+        try (Stream<ProductList> products = productRepository.streamAllOrderById()) {
+            products.forEach(product -> {
+                entityManager.detach(product);
+                Integer total = shardTotals.get(product.getCode());
+                if (total != null) {
+                    product.setStock(total);
+                }
+                consumer.accept(product);
+            });
+        }
     }
 
     //Programmatic Transaction Management
@@ -67,6 +130,7 @@ public class ProductListService {
     public ProductList programmaticTransaction(ProductList product) {
         DefaultTransactionDefinition def = new DefaultTransactionDefinition();
         def.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        def.setName("ProductListService.programmaticTransaction");
 
         TransactionStatus status = transactionManager.getTransaction(def);
 
@@ -74,6 +138,8 @@ public class ProductListService {
             productRepository.save(product);
             // Commit the transaction
             transactionManager.commit(status);
+            reservationLedger.evict(product.getCode());
+            productCache.evictAfterCompletion(product.getCode());
         } catch (Exception e) {
             // Rollback the transaction in case of failure
             transactionManager.rollback(status);
@@ -82,4 +148,30 @@ public class ProductListService {
 
         return product;
     }
+
+    // Sharded products keep their stock in shards, an absolute update is spread over them
+    private void setStock(ProductList product, int stock) {
+        if (shardedStock.isSharded(product.getCode())) {
+            shardedStock.resetStock(product.getCode(), stock);
+            // The row itself keeps 0, only the returned copy shows the new total
+            entityManager.detach(product);
+            product.setStock(stock);
+        } else {
+            product.setStock(stock);
+            productRepository.save(product);
+        }
+    }
+
+    // Reports the aggregate shard stock for sharded products; the rows are detached before being changed
+    private List<ProductList> withShardTotals(List<ProductList> products) {
+        Map<String, Integer> shardTotals = shardedStock.totalsByCode();
+        for (ProductList product : products) {
+            Integer total = shardTotals.get(product.getCode());
+            if (total != null) {
+                entityManager.detach(product);
+                product.setStock(total);
+            }
+        }
+        return products;
+    }
 }
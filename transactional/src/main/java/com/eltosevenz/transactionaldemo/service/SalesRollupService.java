@@ -0,0 +1,221 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.RollupGranularity;
+import com.eltosevenz.transactionaldemo.model.SalesRollupDelta;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.SalesRollupDeltaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Incrementally maintained sales rollups (units and orders per product per minute/hour/day).
+//record() runs inside the transaction that inserts the orders and only appends SALES_ROLLUP_DELTA rows, so the sales
+//commit or roll back with the orders without any order transaction locking a shared SALES_ROLLUP row.
+//A single folder thread moves committed deltas into SALES_ROLLUP every fold-interval-ms; the stats lag the orders by
+//up to that interval. Orders are counted once: live paths flag them rolledUp, the backfill only picks up orders
+//without the flag, and a delta is deleted in the same transaction that adds it to SALES_ROLLUP.
+@Service
+public class SalesRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesRollupService.class);
+
+    // Standard SQL MERGE (H2, PostgreSQL 15+, Oracle, SQL Server, DB2)
+    private static final String MERGE = "MERGE INTO SALES_ROLLUP r " +
+            "USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS TIMESTAMP), CAST(? AS BIGINT), CAST(? AS BIGINT))) " +
+            "AS d (product_code, granularity, bucket_start, units, order_count) " +
+            "ON r.product_code = d.product_code AND r.granularity = d.granularity AND r.bucket_start = d.bucket_start " +
+            "WHEN MATCHED THEN UPDATE SET units = r.units + d.units, order_count = r.order_count + d.order_count " +
+            "WHEN NOT MATCHED THEN INSERT (product_code, granularity, bucket_start, units, order_count) " +
+            "VALUES (d.product_code, d.granularity, d.bucket_start, d.units, d.order_count)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Autowired
+    private SalesRollupDeltaRepository deltaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${orders.sales-rollup.fold-interval-ms:1000}")
+    private long foldIntervalMs;
+
+    @Value("${orders.sales-rollup.fold-batch-size:5000}")
+    private int foldBatchSize;
+
+    private final ReentrantLock foldLock = new ReentrantLock();
+    private TransactionTemplate foldTransaction;
+    private ScheduledExecutorService folder;
+
+    private record BucketKey(String productCode, RollupGranularity granularity, LocalDateTime bucketStart) {
+    }
+
+    // The folder merges its buckets in key order
+    private static final Comparator<BucketKey> BUCKET_ORDER = Comparator.comparing(BucketKey::productCode)
+            .thenComparing(BucketKey::granularity)
+            .thenComparing(BucketKey::bucketStart);
+
+    public record BackfillResult(long orders, int chunks) {
+    }
+
+    @PostConstruct
+    void start() {
+        foldTransaction = new TransactionTemplate(transactionManager);
+        foldTransaction.setName("SalesRollupService.fold");
+        folder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sales-rollup-folder");
+            t.setDaemon(true);
+            return t;
+        });
+        folder.scheduleWithFixedDelay(this::foldQuietly, foldIntervalMs, foldIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Unfolded deltas stay in the table and are folded after the next start
+    @PreDestroy
+    void stop() throws InterruptedException {
+        folder.shutdown();
+        folder.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    //Adds the orders to their rollup buckets: one SALES_ROLLUP_DELTA row per (product, granularity, bucket).
+    //Call it before the orders are saved so the rolledUp flag goes out with the INSERT.
+    public void record(Collection<OrderRequest> orders) {
+        Map<BucketKey, long[]> increments = new HashMap<>();
+        for (OrderRequest order : orders) {
+            order.setRolledUp(true);
+            LocalDateTime time = LocalDateTime.ofInstant(order.getOrderDate().toInstant(), ZoneOffset.UTC);
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                long[] totals = increments.computeIfAbsent(
+                        new BucketKey(order.getProductCode(), granularity, granularity.bucketOf(time)), k -> new long[2]);
+                totals[0] += order.getQuantity();
+                totals[1]++;
+            }
+        }
+        List<SalesRollupDelta> deltas = new ArrayList<>(increments.size());
+        increments.forEach((key, totals) -> {
+            SalesRollupDelta delta = new SalesRollupDelta();
+            delta.setProductCode(key.productCode());
+            delta.setGranularity(key.granularity());
+            delta.setBucketStart(key.bucketStart());
+            delta.setUnits(totals[0]);
+            delta.setOrderCount(totals[1]);
+            deltas.add(delta);
+        });
+        deltaRepository.saveAll(deltas);
+    }
+
+    public void record(OrderRequest order) {
+        record(List.of(order));
+    }
+
+    //Counts every order that is not in the rollups yet, reading OrderRequest in keyset chunks.
+    //Each chunk is aggregated, upserted and flagged in its own transaction, so the job holds at most one chunk
+    //in memory, can run next to live traffic and can be stopped and resumed at any point.
+    public BackfillResult backfill(int chunkSize) {
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+        chunkTransaction.setName("SalesRollupService.backfill");
+        long lastId = 0;
+        long orders = 0;
+        int chunks = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Long> ids = chunkTransaction.execute(status -> {
+                List<OrderRequest> chunk = orderRepository.findNotRolledUpAfter(afterId, Limit.of(chunkSize));
+                if (chunk.isEmpty()) {
+                    return List.<Long>of();
+                }
+                record(chunk);
+                List<Long> chunkIds = chunk.stream().map(OrderRequest::getId).toList();
+                orderRepository.markRolledUp(chunkIds);
+                return chunkIds;
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+            orders += ids.size();
+            chunks++;
+        }
+        fold();
+        log.info("Sales rollup backfill counted {} orders in {} chunks", orders, chunks);
+        return new BackfillResult(orders, chunks);
+    }
+
+    //Moves every committed delta into SALES_ROLLUP, fold-batch-size deltas per transaction.
+    //Returns the number of deltas folded.
+    public long fold() {
+        foldLock.lock();
+        try {
+            long folded = 0;
+            while (true) {
+                Integer batch = foldTransaction.execute(this::foldBatch);
+                if (batch == null || batch == 0) {
+                    return folded;
+                }
+                if (batch > 0) {
+                    folded += batch;
+                }
+            }
+        } finally {
+            foldLock.unlock();
+        }
+    }
+
+    private void foldQuietly() {
+        try {
+            fold();
+        } catch (RuntimeException e) {
+            // The deltas are still there, the next run picks them up
+            log.warn("Folding sales rollup deltas failed", e);
+        }
+    }
+
+    //Folds the oldest deltas, returns how many, or -1 if another folder took some of them first.
+    private int foldBatch(TransactionStatus status) {
+        List<SalesRollupDelta> deltas = deltaRepository.findByOrderByIdAsc(Limit.of(foldBatchSize));
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        // Claim the deltas before merging them: a folder in another instance that read the same rows deletes
+        // fewer of them once that folder commits, and rolls back instead of counting them twice
+        List<Long> ids = deltas.stream().map(SalesRollupDelta::getId).toList();
+        if (deltaRepository.deleteByIds(ids) != ids.size()) {
+            status.setRollbackOnly();
+            return -1;
+        }
+
+        Map<BucketKey, long[]> totals = new TreeMap<>(BUCKET_ORDER);
+        for (SalesRollupDelta delta : deltas) {
+            long[] bucket = totals.computeIfAbsent(
+                    new BucketKey(delta.getProductCode(), delta.getGranularity(), delta.getBucketStart()), k -> new long[2]);
+            bucket[0] += delta.getUnits();
+            bucket[1] += delta.getOrderCount();
+        }
+        List<Object[]> rows = new ArrayList<>(totals.size());
+        totals.forEach((key, bucket) -> rows.add(new Object[]{
+                key.productCode(), key.granularity().name(), key.bucketStart(), bucket[0], bucket[1]}));
+        jdbcTemplate.batchUpdate(MERGE, rows);
+        return deltas.size();
+    }
+}
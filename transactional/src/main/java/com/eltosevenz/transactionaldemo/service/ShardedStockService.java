@@ -0,0 +1,182 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.ProductStockShard;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductStockShardRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Sharded stock for hot products.
+//A sharded product keeps its stock in N PRODUCT_STOCK_SHARD rows and 0 in PRODUCT_LIST.stock, so concurrent
+//orders lock different rows instead of queueing on one. An order decrements a random shard and walks the
+//sibling shards when that one runs dry; only when no single shard can cover the quantity are all shards
+//locked (in shard order) and the quantity taken across them.
+@Service
+public class ShardedStockService {
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    // Shard count per sharded product code; products that are not in here use PRODUCT_LIST.stock
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+
+    // Not readOnly: with read/write routing a lagging replica could miss shards, and orders would then
+    // take stock from the empty PRODUCT_LIST row
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void loadShardCounts() {
+        for (ProductStockShardRepository.ShardTotal total : shardRepository.findTotals()) {
+            shardCounts.put(total.getProductCode(), (int) total.getShards());
+        }
+    }
+
+    public boolean isSharded(String productCode) {
+        return shardCounts.containsKey(productCode);
+    }
+
+    public boolean anySharded() {
+        return !shardCounts.isEmpty();
+    }
+
+    //Moves the product's whole stock (PRODUCT_LIST.stock plus any existing shards) into `shards` rows,
+    //spread evenly. shards = 0 collapses it back into PRODUCT_LIST.stock.
+    @Transactional
+    public ProductList reshard(String productCode, int shards) {
+        if (shards < 0) {
+            throw new IllegalArgumentException("Shard count cannot be negative");
+        }
+        List<ProductList> locked = productRepository.findAllByCodeInOrderByCode(List.of(productCode));
+        if (locked.isEmpty()) {
+            throw new IllegalArgumentException("Product not found: " + productCode);
+        }
+        ProductList product = locked.get(0);
+
+        int total = product.getStock();
+        for (ProductStockShard shard : shardRepository.findByProductCodeOrderByShardNo(productCode)) {
+            total += shard.getStock();
+        }
+        shardRepository.deleteByProductCode(productCode);
+
+        if (shards == 0) {
+            product.setStock(total);
+        } else {
+            product.setStock(0);
+            shardRepository.saveAll(split(productCode, total, shards));
+        }
+        productCache.evictAfterCompletion(productCode);
+
+        afterCommit(() -> {
+            if (shards == 0) {
+                shardCounts.remove(productCode);
+            } else {
+                shardCounts.put(productCode, shards);
+            }
+        });
+
+        // Report the aggregate without touching the managed entity
+        ProductList view = new ProductList();
+        view.setId(product.getId());
+        view.setCode(product.getCode());
+        view.setName(product.getName());
+        view.setStock(total);
+        view.setVersion(product.getVersion());
+        return view;
+    }
+
+    //Sets the total stock of a sharded product, spread evenly over its shards.
+    //Must run inside the caller's write transaction.
+    public void resetStock(String productCode, int stock) {
+        List<ProductStockShard> shards = shardRepository.findByProductCodeOrderByShardNo(productCode);
+        List<ProductStockShard> spread = split(productCode, stock, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setStock(spread.get(i).getStock());
+        }
+    }
+
+    //Takes `quantity` from a sharded product inside the caller's transaction, false if the total is too low.
+    public boolean takeStock(String productCode, int quantity) {
+        int shards = shardCounts.getOrDefault(productCode, 0);
+        int start = shards == 0 ? 0 : ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            if (shardRepository.decrementShard(productCode, (start + i) % shards, quantity) == 1) {
+                return true;
+            }
+        }
+
+        // No single shard covers the quantity, take it across shards under lock. The shards are read as values and
+        // decremented with the same conditional UPDATE: writing back managed entities would overwrite the bulk
+        // decrements made earlier in this transaction.
+        List<ProductStockShardRepository.ShardStock> locked = shardRepository.lockStock(productCode);
+        int total = locked.stream().mapToInt(ProductStockShardRepository.ShardStock::getStock).sum();
+        if (total < quantity) {
+            return false;
+        }
+        int remaining = quantity;
+        for (ProductStockShardRepository.ShardStock shard : locked) {
+            int taken = Math.min(remaining, shard.getStock());
+            if (taken > 0 && shardRepository.decrementShard(productCode, shard.getShardNo(), taken) != 1) {
+                throw new IllegalStateException("Locked shard " + shard.getShardNo() + " of " + productCode + " changed");
+            }
+            remaining -= taken;
+        }
+        return true;
+    }
+
+    public int totalStock(String productCode) {
+        return (int) shardRepository.sumStock(productCode);
+    }
+
+    // Aggregate stock of every sharded product, one grouped query
+    public Map<String, Integer> totalsByCode() {
+        if (shardCounts.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Integer> totals = new HashMap<>();
+        for (ProductStockShardRepository.ShardTotal total : shardRepository.findTotals()) {
+            totals.put(total.getProductCode(), (int) total.getStock());
+        }
+        return totals;
+    }
+
+    private static List<ProductStockShard> split(String productCode, int total, int shards) {
+        List<ProductStockShard> result = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            ProductStockShard shard = new ProductStockShard();
+            shard.setProductCode(productCode);
+            shard.setShardNo(i);
+            // The first total % shards shards get one extra unit
+            shard.setStock(total / shards + (i < total % shards ? 1 : 0));
+            result.add(shard);
+        }
+        return result;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
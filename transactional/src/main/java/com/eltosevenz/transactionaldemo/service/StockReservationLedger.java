@@ -0,0 +1,499 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.ReservationDeadLetter;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import com.eltosevenz.transactionaldemo.repository.ReservationDeadLetterRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+//In-memory stock reservation ledger in front of OrderRequestService.placeOrder.
+//Orders are accepted or rejected against per-product atomic counters, without touching the database,
+//and accepted reservations are written behind to ORDER_REQUEST / PRODUCT_LIST in batches.
+//
+//Recovery rules:
+// - PRODUCT_LIST stays the source of truth. Counters hold no durable state and are loaded lazily
+//   from the database on first use, so after a restart the ledger starts from the committed stock.
+// - A reservation is only durable once its write-behind batch has committed. On a graceful shutdown the
+//   queue is drained before the context closes; on a crash the accepted-but-unflushed reservations are lost.
+//   The stock they held was never decremented in the database, so a crash can lose orders but never oversell.
+// - Direct stock writes (updateStock, createProduct, ...) must call evictAfterCommit(code). The next reservation
+//   reloads the counter as "database stock minus reservations still waiting to be flushed".
+// - Order paths that write their orders themselves (batch, group commit, placeOrder) take their stock from the
+//   counters too, with takeInTransaction. Otherwise they could sell stock the ledger already promised.
+// - A batch failing on a transient database error (connection lost, timeout, deadlock, ...) is kept and retried
+//   with exponential backoff until the database is back; its stock stays reserved meanwhile.
+// - A batch failing on anything else is retried max-flush-attempts times, then split in halves until the entries
+//   that still fail are isolated. Those are dead-lettered: stored in RESERVATION_DEAD_LETTER, then their stock
+//   is released.
+@Component
+public class StockReservationLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationLedger.class);
+
+    private static final int STRIPES = 64;
+
+    // Transaction resource holding the quantities taken by takeInTransaction, per product code
+    private static final Object TAKEN_IN_TRANSACTION = new Object();
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    @Autowired
+    private ReservationDeadLetterRepository deadLetterRepository;
+
+    @Value("${orders.reservation-ledger.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.reservation-ledger.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${orders.reservation-ledger.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${orders.reservation-ledger.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${orders.reservation-ledger.max-flush-attempts:5}")
+    private int maxFlushAttempts;
+
+    @Value("${orders.reservation-ledger.max-retry-backoff-ms:5000}")
+    private long maxRetryBackoffMs;
+
+    @Value("${orders.reservation-ledger.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    // Quantity accepted by the ledger but not yet committed to PRODUCT_LIST, per product code
+    private final ConcurrentHashMap<String, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+    // Loading a counter hits the database, so loads are serialized per stripe instead of per map bin.
+    // Locks rather than synchronized: a virtual thread blocked in JDBC inside synchronized pins its carrier.
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private BlockingQueue<OrderRequest> queue;
+    private final List<OrderRequest> failedBatch = new ArrayList<>();
+    // Non-transient failures of the current failedBatch
+    private int failedAttempts;
+    // Consecutive writer ticks that left a failedBatch behind, drives the backoff
+    private int failedTicks;
+    private ScheduledThreadPoolExecutor writer;
+
+    private static final class Counter {
+        final AtomicInteger available;
+        volatile boolean retired;
+
+        Counter(int stock) {
+            this.available = new AtomicInteger(stock);
+        }
+    }
+
+    public StockReservationLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        failedTicks = 0;
+        writer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "stock-ledger-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        // The next tick is scheduled by the current one, drop it on shutdown instead of waiting for it
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        writer.schedule(this::writeBehind, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+        // Drain whatever is still queued so a graceful shutdown loses nothing. While the database is failing
+        // this keeps retrying with backoff, for at most shutdown-timeout-ms.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        int retries = 0;
+        while (queuedReservations() > 0) {
+            if (flush() || failedBatch.isEmpty()) {
+                retries = 0;
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                List<OrderRequest> lost = new ArrayList<>(failedBatch);
+                queue.drainTo(lost);
+                failedBatch.clear();
+                for (OrderRequest order : lost) {
+                    log.error("Shutting down with unflushed reservation of {} x {} accepted at {}, it is lost",
+                            order.getQuantity(), order.getProductCode(), order.getOrderDate());
+                }
+                return;
+            }
+            Thread.sleep(retryBackoffMs(++retries));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String reserve(String productCode, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        if (!take(productCode, quantity)) {
+            throw new RuntimeException("Insufficient stock for product: " + productCode);
+        }
+
+        OrderRequest order = new OrderRequest();
+        order.setProductCode(productCode);
+        order.setQuantity(quantity);
+        order.setOrderDate(new Date());
+        if (!queue.offer(order)) {
+            release(productCode, quantity);
+            throw new RuntimeException("Order queue is full, try again later");
+        }
+        return "Order accepted!";
+    }
+
+    //Takes stock for an order that the caller writes to the database itself, in the current transaction.
+    //The quantity is pending until the transaction completes: on commit the database holds the decrement,
+    //on rollback the quantity goes back to the counter. False when the ledger cannot cover it; a no-op when
+    //the ledger is disabled. Unknown codes throw IllegalArgumentException, like reserve.
+    public boolean takeInTransaction(String productCode, int quantity) {
+        if (!enabled) {
+            return true;
+        }
+        Map<String, Integer> taken = takenInTransaction();
+        if (!take(productCode, quantity)) {
+            return false;
+        }
+        taken.merge(productCode, quantity, Integer::sum);
+        return true;
+    }
+
+    // Hands back what takeInTransaction took, for an order the transaction rejected after all
+    public void giveBackInTransaction(String productCode, int quantity) {
+        if (!enabled) {
+            return;
+        }
+        takenInTransaction().merge(productCode, -quantity, Integer::sum);
+        release(productCode, quantity);
+    }
+
+    private Map<String, Integer> takenInTransaction() {
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> taken = (Map<String, Integer>) TransactionSynchronizationManager.getResource(TAKEN_IN_TRANSACTION);
+        if (taken != null) {
+            return taken;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Taking stock from the ledger needs a transaction");
+        }
+        Map<String, Integer> created = new HashMap<>();
+        TransactionSynchronizationManager.bindResource(TAKEN_IN_TRANSACTION, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TAKEN_IN_TRANSACTION);
+                created.forEach((code, quantity) -> {
+                    if (status == STATUS_ROLLED_BACK) {
+                        release(code, quantity);
+                    } else {
+                        // Committed, or unknown: counting it as committed can only under-sell until the next reload
+                        pending.get(code).addAndGet(-quantity);
+                    }
+                });
+            }
+        });
+        return created;
+    }
+
+    // Takes the quantity from the counter and records it as pending; false if the counter cannot cover it
+    private boolean take(String productCode, int quantity) {
+        // Unknown codes fail here, before anything is recorded for them
+        Counter counter = counterFor(productCode);
+        AtomicInteger pendingForCode = pending.computeIfAbsent(productCode, c -> new AtomicInteger());
+
+        while (true) {
+            if (!tryTake(counter.available, quantity)) {
+                if (counter.retired) {
+                    counter = counterFor(productCode);
+                    continue;
+                }
+                return false;
+            }
+            // Publish the reservation as pending before checking for eviction: if the counter was not yet
+            // retired at this point, the reload that replaces it is guaranteed to see this quantity
+            pendingForCode.addAndGet(quantity);
+            if (counter.retired) {
+                // Counter was evicted underneath us, give the stock back and retry on the reloaded one
+                pendingForCode.addAndGet(-quantity);
+                counter.available.addAndGet(quantity);
+                counter = counterFor(productCode);
+                continue;
+            }
+            return true;
+        }
+    }
+
+    // Drops the cached counter once the surrounding transaction commits, or immediately if there is none
+    public void evictAfterCommit(String productCode) {
+        if (!enabled || productCode == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(productCode);
+                }
+            });
+        } else {
+            evict(productCode);
+        }
+    }
+
+    public void evict(String productCode) {
+        ReentrantLock stripe = stripeFor(productCode);
+        stripe.lock();
+        try {
+            Counter counter = counters.remove(productCode);
+            if (counter != null) {
+                counter.retired = true;
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    public int queuedReservations() {
+        return queue == null ? 0 : queue.size() + failedBatch.size();
+    }
+
+    public List<ReservationDeadLetter> deadLetters() {
+        return deadLetterRepository.findAllByOrderByIdAsc();
+    }
+
+    private Counter counterFor(String productCode) {
+        Counter counter = counters.get(productCode);
+        if (counter != null) {
+            return counter;
+        }
+        ReentrantLock stripe = stripeFor(productCode);
+        stripe.lock();
+        try {
+            counter = counters.get(productCode);
+            if (counter == null) {
+                // Read pending before the row: a batch committing in between is subtracted twice (we under-sell
+                // until the next reload), never zero times
+                AtomicInteger pendingForCode = pending.get(productCode);
+                int unflushed = pendingForCode == null ? 0 : pendingForCode.get();
+                ProductList product = productRepository.findByCode(productCode);
+                if (product == null) {
+                    throw new IllegalArgumentException("Product not found: " + productCode);
+                }
+                int stock = shardedStock.isSharded(productCode) ? shardedStock.totalStock(productCode) : product.getStock();
+                counter = new Counter(stock - unflushed);
+                counters.put(productCode, counter);
+            }
+            return counter;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private static boolean tryTake(AtomicInteger available, int quantity) {
+        while (true) {
+            int current = available.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(String productCode, int quantity) {
+        Counter counter = counters.get(productCode);
+        if (counter != null) {
+            counter.available.addAndGet(quantity);
+        }
+        pending.get(productCode).addAndGet(-quantity);
+    }
+
+    private ReentrantLock stripeFor(String productCode) {
+        return stripes[(productCode.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    // One tick of the writer thread. While a batch keeps failing the ticks back off exponentially from
+    // flush-interval-ms up to max-retry-backoff-ms; the first tick that leaves nothing behind resets the interval.
+    private void writeBehind() {
+        long delay = flushIntervalMs;
+        try {
+            flush();
+            failedTicks = failedBatch.isEmpty() ? 0 : failedTicks + 1;
+            delay = retryBackoffMs(failedTicks);
+        } catch (RuntimeException e) {
+            log.error("Reservation write-behind failed", e);
+        } finally {
+            try {
+                writer.schedule(this::writeBehind, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, stop() drains the rest
+            }
+        }
+    }
+
+    private long retryBackoffMs(int failures) {
+        return Math.min(flushIntervalMs << Math.min(failures, 20), Math.max(maxRetryBackoffMs, flushIntervalMs));
+    }
+
+    // Failures the same batch can get past by trying again later. Anything else (a product that is gone, stock
+    // that no longer covers a reservation, a constraint violation) fails the same way on every attempt.
+    static boolean isTransient(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Runs on the single writer thread (or on shutdown once the writer has stopped)
+    boolean flush() {
+        List<OrderRequest> batch = new ArrayList<>(failedBatch);
+        failedBatch.clear();
+        while (!queue.isEmpty() && batch.size() < flushBatchSize) {
+            queue.drainTo(batch, flushBatchSize - batch.size());
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            persist(batch);
+        } catch (Exception e) {
+            if (isTransient(e)) {
+                // The stock stays reserved and the batch waits for the database, however long that takes;
+                // meanwhile the queue fills up and reserve() starts refusing orders
+                log.warn("Failed to flush {} reservations on a transient error, will retry: {}", batch.size(), e.toString());
+                failedBatch.addAll(batch);
+                return false;
+            }
+            if (++failedAttempts < maxFlushAttempts) {
+                // Keep the batch and retry it on the next tick; the stock stays reserved meanwhile
+                log.error("Failed to flush {} reservations (attempt {}/{}), will retry",
+                        batch.size(), failedAttempts, maxFlushAttempts, e);
+                failedBatch.addAll(batch);
+                return false;
+            }
+            log.error("Failed to flush {} reservations {} times, splitting the batch", batch.size(), failedAttempts, e);
+            failedAttempts = 0;
+            persistOrDeadLetter(batch, e);
+            return false;
+        }
+        failedAttempts = 0;
+        return true;
+    }
+
+    // Bisects a failing batch: the halves that commit are done, single entries that still fail are dead-lettered.
+    // A half failing on a transient error goes back to failedBatch instead, it may well commit later.
+    private void persistOrDeadLetter(List<OrderRequest> batch, Exception failure) {
+        if (batch.size() == 1) {
+            deadLetter(batch.get(0), failure);
+            return;
+        }
+        int mid = batch.size() / 2;
+        for (List<OrderRequest> half : List.of(batch.subList(0, mid), batch.subList(mid, batch.size()))) {
+            try {
+                persist(half);
+            } catch (Exception e) {
+                if (isTransient(e)) {
+                    failedBatch.addAll(half);
+                } else {
+                    persistOrDeadLetter(half, e);
+                }
+            }
+        }
+    }
+
+    private void persist(List<OrderRequest> batch) {
+        // A rolled back attempt leaves the sequence ids on the entities, the next one must insert them afresh
+        for (OrderRequest order : batch) {
+            order.setId(null);
+        }
+        orderService.persistReservations(batch);
+        // Only after commit, see counterFor
+        for (OrderRequest order : batch) {
+            pending.get(order.getProductCode()).addAndGet(-order.getQuantity());
+        }
+    }
+
+    // The order never reached the database, so the stock it reserved goes back to the counter,
+    // but only once the dead letter itself is stored
+    private void deadLetter(OrderRequest order, Exception failure) {
+        ReservationDeadLetter deadLetter = new ReservationDeadLetter();
+        deadLetter.setProductCode(order.getProductCode());
+        deadLetter.setQuantity(order.getQuantity());
+        deadLetter.setOrderDate(order.getOrderDate());
+        String reason = String.valueOf(failure);
+        deadLetter.setReason(reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+        deadLetter.setDeadLetteredAt(Instant.now());
+        try {
+            deadLetterRepository.save(deadLetter);
+        } catch (RuntimeException e) {
+            log.error("Could not store the dead letter of {} x {}, keeping the reservation",
+                    order.getQuantity(), order.getProductCode(), e);
+            failedBatch.add(order);
+            return;
+        }
+        log.error("Dead-lettered reservation of {} x {} accepted at {}: {}",
+                order.getQuantity(), order.getProductCode(), order.getOrderDate(), reason);
+        release(order.getProductCode(), order.getQuantity());
+    }
+}
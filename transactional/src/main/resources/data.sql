@@ -1,5 +1,6 @@
 -- Insert initial product data
-INSERT INTO PRODUCT_LIST (code, name, stock) VALUES ('P001', 'Laptop', 10);
-INSERT INTO PRODUCT_LIST (code, name, stock) VALUES ('P002', 'Smartphone', 20);
-INSERT INTO PRODUCT_LIST (code, name, stock) VALUES ('P003', 'Headphones', 50);
+-- Ids come from the same pooled sequence Hibernate uses for ProductList
+INSERT INTO PRODUCT_LIST (id, code, name, stock, version) VALUES (NEXT VALUE FOR PRODUCT_LIST_SEQ, 'P001', 'Laptop', 10, 0);
+INSERT INTO PRODUCT_LIST (id, code, name, stock, version) VALUES (NEXT VALUE FOR PRODUCT_LIST_SEQ, 'P002', 'Smartphone', 20, 0);
+INSERT INTO PRODUCT_LIST (id, code, name, stock, version) VALUES (NEXT VALUE FOR PRODUCT_LIST_SEQ, 'P003', 'Headphones', 50, 0);
 
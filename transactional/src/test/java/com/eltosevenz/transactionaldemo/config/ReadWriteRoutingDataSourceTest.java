@@ -0,0 +1,59 @@
+package com.eltosevenz.transactionaldemo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The replica is a second, empty H2 database, so the database name tells which pool served a transaction
+@SpringBootTest(properties = {
+        "datasource.routing.enabled=true",
+        "datasource.routing.replica.jdbc-url=jdbc:h2:mem:routing-replica",
+        "datasource.routing.read-your-writes-ms=60000"
+})
+class ReadWriteRoutingDataSourceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertEquals("ROUTING-REPLICA", databaseAs("fresh-client", true));
+        assertEquals("TESTDB", databaseAs("fresh-client", false));
+    }
+
+    @Test
+    void onlyTheWriterIsPinnedToThePrimaryAfterItsWrite() throws Exception {
+        assertEquals("ROUTING-REPLICA", databaseAs("writer", true));
+        databaseAs("writer", false);
+        assertEquals("TESTDB", databaseAs("writer", true));
+
+        // Another client, and a thread with no client bound, still read from the replica
+        assertEquals("ROUTING-REPLICA", databaseAs("reader", true));
+        assertEquals("ROUTING-REPLICA", CompletableFuture.supplyAsync(() -> database(true)).get());
+    }
+
+    private String databaseAs(String client, boolean readOnly) {
+        ReadWriteRoutingDataSource.bindClient(client);
+        try {
+            return database(readOnly);
+        } finally {
+            ReadWriteRoutingDataSource.unbindClient();
+        }
+    }
+
+    private String database(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT DATABASE()", String.class));
+    }
+}
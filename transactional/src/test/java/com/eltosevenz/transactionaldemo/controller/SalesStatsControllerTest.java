@@ -0,0 +1,96 @@
+package com.eltosevenz.transactionaldemo.controller;
+
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.service.SalesRollupService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class SalesStatsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SalesRollupService rollupService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void productSalesReturnsTheBucketSeries() throws Exception {
+        record(order("SERIES", "2023-03-01T09:10:00Z", 2),
+                order("SERIES", "2023-03-01T09:40:00Z", 3),
+                order("SERIES", "2023-03-01T11:05:00Z", 1));
+
+        mockMvc.perform(get("/api/orders/stats")
+                        .param("productCode", "SERIES")
+                        .param("granularity", "HOUR")
+                        .param("from", "2023-03-01T00:00:00")
+                        .param("to", "2023-03-01T23:59:59"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].bucketStart").value("2023-03-01T09:00:00"))
+                .andExpect(jsonPath("$[0].units").value(5))
+                .andExpect(jsonPath("$[0].orderCount").value(2))
+                .andExpect(jsonPath("$[1].bucketStart").value("2023-03-01T11:00:00"))
+                .andExpect(jsonPath("$[1].units").value(1));
+    }
+
+    @Test
+    void topProductsAreOrderedByUnits() throws Exception {
+        record(order("TOP-A", "2023-03-02T09:00:00Z", 4),
+                order("TOP-B", "2023-03-02T10:00:00Z", 10),
+                order("TOP-C", "2023-03-02T11:00:00Z", 1),
+                order("TOP-A", "2023-03-02T12:00:00Z", 3));
+
+        mockMvc.perform(get("/api/orders/stats/top")
+                        .param("granularity", "DAY")
+                        .param("from", "2023-03-02T00:00:00")
+                        .param("to", "2023-03-02T00:00:00")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].productCode").value("TOP-B"))
+                .andExpect(jsonPath("$[1].productCode").value("TOP-A"))
+                .andExpect(jsonPath("$[1].units").value(7))
+                .andExpect(jsonPath("$[1].orderCount").value(2));
+    }
+
+    @Test
+    void nonPositiveLimitIsABadRequest() throws Exception {
+        mockMvc.perform(get("/api/orders/stats/top").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/orders/stats/top").param("limit", "-5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Each test uses its own products on a fixed past day, so nothing else the suite orders shows up
+    private void record(OrderRequest... orders) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> rollupService.record(List.of(orders)));
+        rollupService.fold();
+    }
+
+    private static OrderRequest order(String productCode, String time, int quantity) {
+        OrderRequest order = new OrderRequest();
+        order.setProductCode(productCode);
+        order.setQuantity(quantity);
+        order.setOrderDate(Date.from(Instant.parse(time)));
+        return order;
+    }
+}
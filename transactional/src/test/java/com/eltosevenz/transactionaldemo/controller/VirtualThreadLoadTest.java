@@ -0,0 +1,139 @@
+package com.eltosevenz.transactionaldemo.controller;
+
+import com.eltosevenz.transactionaldemo.TransactionaldemoApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Platform vs virtual threads under a JDBC-bound load: SLOW_CLIENTS keep requests blocked in a 100ms query
+// (far more than Tomcat's 200 platform threads), while FAST_CLIENTS call an endpoint that needs no connection.
+// Both modes get the same connection pool, so the difference is only in how waiting requests are parked.
+// Run with: mvn test -Dtest=VirtualThreadLoadTest -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadLoadTest {
+
+    private static final int SLOW_CLIENTS = 300;
+    private static final int FAST_CLIENTS = 20;
+    private static final long QUERY_MS = 100;
+    private static final long DURATION_MS = 15_000;
+
+    @RestController
+    static class LoadController {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        LoadController(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+            jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS SLEEP_MS FOR 'java.lang.Thread.sleep(long)'");
+        }
+
+        // Holds a pooled connection for QUERY_MS, like a slow query
+        @GetMapping("/load/slow")
+        public String slow() {
+            jdbcTemplate.execute("CALL SLEEP_MS(" + QUERY_MS + ")");
+            return "slow";
+        }
+
+        @GetMapping("/load/fast")
+        public String fast() {
+            return "fast";
+        }
+    }
+
+    @Test
+    void platformVersusVirtualThreads() throws InterruptedException {
+        System.out.println("mode      slow req/s  slow errors  fast p50 ms  fast p99 ms  fast max ms  pinned");
+        for (boolean virtual : new boolean[]{false, true}) {
+            // Command-line arguments, so they win over application.properties and the profile
+            String[] args = {"--server.port=0",
+                    "--spring.datasource.url=jdbc:h2:mem:load-" + UUID.randomUUID(),
+                    "--spring.datasource.hikari.maximum-pool-size=50",
+                    "--spring.datasource.hikari.connection-timeout=5000",
+                    "--spring.devtools.restart.enabled=false",
+                    "--logging.level.root=WARN"};
+            SpringApplicationBuilder builder = new SpringApplicationBuilder(TransactionaldemoApplication.class, LoadController.class);
+            if (virtual) {
+                builder.profiles("virtual");
+            }
+            try (ConfigurableApplicationContext context = builder.run(args)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                run(virtual ? "virtual" : "platform", port, context.getBean(MeterRegistry.class));
+            }
+        }
+    }
+
+    private void run(String mode, int port, MeterRegistry meterRegistry) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        HttpRequest slow = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/load/slow")).build();
+        HttpRequest fast = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/load/fast")).build();
+        AtomicLong slowDone = new AtomicLong();
+        AtomicLong slowErrors = new AtomicLong();
+        List<Long> fastLatencies = Collections.synchronizedList(new ArrayList<>());
+        long end = System.currentTimeMillis() + DURATION_MS;
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < SLOW_CLIENTS; i++) {
+                clients.execute(() -> {
+                    while (System.currentTimeMillis() < end) {
+                        try {
+                            HttpResponse<String> response = client.send(slow, HttpResponse.BodyHandlers.ofString());
+                            (response.statusCode() == 200 ? slowDone : slowErrors).incrementAndGet();
+                        } catch (Exception e) {
+                            slowErrors.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            // Let the slow clients saturate the server before measuring the fast ones
+            Thread.sleep(1000);
+            for (int i = 0; i < FAST_CLIENTS; i++) {
+                clients.execute(() -> {
+                    while (System.currentTimeMillis() < end) {
+                        long start = System.nanoTime();
+                        try {
+                            client.send(fast, HttpResponse.BodyHandlers.ofString());
+                            fastLatencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        } catch (Exception e) {
+                            // only latencies of answered requests are reported
+                        }
+                    }
+                });
+            }
+        }
+
+        List<Long> sorted = new ArrayList<>(fastLatencies);
+        Collections.sort(sorted);
+        long pinned = meterRegistry.find("jvm.threads.virtual.pinned").timers().stream().mapToLong(Timer::count).sum();
+        System.out.printf("%-8s  %10.0f  %11d  %11d  %11d  %11d  %6d%n", mode,
+                slowDone.get() / (DURATION_MS / 1000.0), slowErrors.get(),
+                percentile(sorted, 0.50), percentile(sorted, 0.99),
+                sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1), pinned);
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+    }
+}
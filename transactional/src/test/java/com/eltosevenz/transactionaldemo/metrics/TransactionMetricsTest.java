@@ -0,0 +1,127 @@
+package com.eltosevenz.transactionaldemo.metrics;
+
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.service.OrderRequestService;
+import com.eltosevenz.transactionaldemo.service.ProductListService;
+import com.eltosevenz.transactionaldemo.service.ShardedStockService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Own database, the spy gives this test a context of its own anyway
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:transaction-metrics")
+@AutoConfigureMockMvc
+class TransactionMetricsTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @SpyBean
+    private ShardedStockService shardedStock;
+
+    @Test
+    void countsCommitsAndRollbacksWithTheDeclaredIsolation() throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode("METERED");
+        product.setName("Metered product");
+        product.setStock(10);
+        productService.createProduct(product);
+
+        long committed = methodCount("ProductListService.updateStock", "SERIALIZABLE", "false", "none");
+        long failed = methodCount("ProductListService.updateStock", "SERIALIZABLE", "false", "IllegalArgumentException");
+        long commits = completions("ProductListService.updateStock", "commit");
+        long rollbacks = completions("ProductListService.updateStock", "rollback");
+        long serializableRollbacks = durationCount("ProductListService.updateStock", "SERIALIZABLE", "false", "rollback");
+
+        productService.updateStock(product.getId(), 20);
+        assertThrows(IllegalArgumentException.class, () -> productService.updateStock(-1L, 20));
+
+        assertEquals(committed + 1, methodCount("ProductListService.updateStock", "SERIALIZABLE", "false", "none"));
+        assertEquals(failed + 1, methodCount("ProductListService.updateStock", "SERIALIZABLE", "false", "IllegalArgumentException"));
+        assertEquals(commits + 1, completions("ProductListService.updateStock", "commit"));
+        assertEquals(rollbacks + 1, completions("ProductListService.updateStock", "rollback"));
+        // The physical transaction is tagged with the isolation it actually ran at
+        assertEquals(serializableRollbacks + 1, durationCount("ProductListService.updateStock", "SERIALIZABLE", "false", "rollback"));
+
+        // The conditional UPDATE of an ATOMIC order is a row-locking statement
+        long decrements = lockingCount("ProductListRepository.decrementStock");
+        orderService.placeOrder("METERED", 1, StockUpdateMode.ATOMIC);
+        assertEquals(decrements + 1, lockingCount("ProductListRepository.decrementStock"));
+    }
+
+    @Test
+    void getAllProductsTimesOutAfterFiveSecondsAndIsReported() throws Exception {
+        long reads = methodCount("ProductListService.getAllProducts", "DEFAULT", "true", "none");
+        productService.getAllProducts();
+        assertEquals(reads + 1, methodCount("ProductListService.getAllProducts", "DEFAULT", "true", "none"));
+        assertEquals(1, durationCount("ProductListService.getAllProducts", "DEFAULT", "true", "commit"));
+
+        // With a sharded product getAllProducts queries the shard totals, here after the 5s deadline has passed
+        shardedStock.reshard("P003", 2);
+        doAnswer(invocation -> {
+            Thread.sleep(5_200);
+            return invocation.callRealMethod();
+        }).when(shardedStock).totalsByCode();
+        assertThrows(TransactionTimedOutException.class, () -> productService.getAllProducts());
+
+        assertEquals(1, (long) meterRegistry.get("tx.timeouts")
+                .tag("method", "ProductListService.getAllProducts").counter().count());
+        assertEquals(1, completions("ProductListService.getAllProducts", "rollback"));
+
+        mockMvc.perform(get("/actuator/transactions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.methods[?(@.method == 'ProductListService.getAllProducts')].timeouts").value(hasItem(1)))
+                .andExpect(jsonPath("$.methods[?(@.method == 'ProductListService.getAllProducts')].count").value(hasItem(2)))
+                .andExpect(jsonPath("$.transactions[?(@.name == 'ProductListService.getAllProducts')].outcomes.rollback").value(hasItem(1)));
+    }
+
+    private long methodCount(String method, String isolation, String readOnly, String exception) {
+        Timer timer = meterRegistry.find("tx.method")
+                .tags("method", method, "isolation", isolation, "readOnly", readOnly, "exception", exception)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long durationCount(String name, String isolation, String readOnly, String outcome) {
+        Timer timer = meterRegistry.find("tx.duration")
+                .tags("name", name, "isolation", isolation, "readOnly", readOnly, "outcome", outcome)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long completions(String name, String outcome) {
+        Counter counter = meterRegistry.find("tx.completions").tags("name", name, "outcome", outcome).counter();
+        return counter == null ? 0 : (long) counter.count();
+    }
+
+    private long lockingCount(String method) {
+        Timer timer = meterRegistry.find("db.locking.statement").tag("method", method).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,136 @@
+package com.eltosevenz.transactionaldemo.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class OptimisticRetryAspectTest {
+
+    @Autowired
+    private FlakyWriter writer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void reset() {
+        writer.reset();
+    }
+
+    @Test
+    void retriesUntilTheWriteSucceeds() {
+        double conflicts = count("stock.optimistic.conflicts");
+        double retries = count("stock.optimistic.retries");
+        double giveups = count("stock.optimistic.giveups");
+        writer.failTimes(3);
+
+        assertEquals("written", writer.write());
+        assertEquals(4, writer.calls());
+        assertEquals(conflicts + 3, count("stock.optimistic.conflicts"));
+        assertEquals(retries + 3, count("stock.optimistic.retries"));
+        assertEquals(giveups, count("stock.optimistic.giveups"));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        double retries = count("stock.optimistic.retries");
+        double giveups = count("stock.optimistic.giveups");
+        writer.failTimes(Integer.MAX_VALUE);
+
+        assertThrows(OptimisticLockingFailureException.class, writer::write);
+        assertEquals(4, writer.calls());
+        assertEquals(retries + 3, count("stock.optimistic.retries"));
+        assertEquals(giveups + 1, count("stock.optimistic.giveups"));
+    }
+
+    @Test
+    void interruptStopsRetryingAndIsKept() {
+        writer.failTimes(Integer.MAX_VALUE);
+
+        Thread.currentThread().interrupt();
+        assertThrows(OptimisticLockingFailureException.class, writer::write);
+        // Thread.interrupted() also clears the flag for the next test
+        assertTrue(Thread.interrupted());
+        assertEquals(1, writer.calls());
+    }
+
+    @Test
+    void backoffGrowsExponentiallyUpToTheCap() {
+        long backoff = 10;
+        long[] expected = {20, 40, 80, 160, 200, 200};
+        for (long next : expected) {
+            backoff = OptimisticRetryAspect.nextBackoff(backoff, 2.0, 200);
+            assertEquals(next, backoff);
+        }
+    }
+
+    @Test
+    void sleepsStayWithinTheBackoffBounds() {
+        writer.failTimes(Integer.MAX_VALUE);
+
+        long start = System.nanoTime();
+        assertThrows(OptimisticLockingFailureException.class, writer::slowWrite);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Three sleeps of at most 40, 50 and 50 ms
+        assertEquals(4, writer.calls());
+        assertTrue(elapsedMs < 140 + 500, "took " + elapsedMs + "ms");
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name, "method", "FlakyWriter.write").count();
+    }
+
+    static class FlakyWriter {
+
+        // Accessed through methods, the bean is a proxy
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile int failures;
+
+        public void reset() {
+            calls.set(0);
+        }
+
+        public void failTimes(int failures) {
+            this.failures = failures;
+        }
+
+        public int calls() {
+            return calls.get();
+        }
+
+        @OptimisticRetry(maxAttempts = 4, initialBackoffMs = 0)
+        public String write() {
+            if (calls.incrementAndGet() <= failures) {
+                throw new OptimisticLockingFailureException("Simulated version conflict");
+            }
+            return "written";
+        }
+
+        @OptimisticRetry(maxAttempts = 4, initialBackoffMs = 40, multiplier = 2, maxBackoffMs = 50)
+        public String slowWrite() {
+            return write();
+        }
+    }
+
+    @TestConfiguration
+    static class FlakyWriterConfig {
+
+        @Bean
+        FlakyWriter flakyWriter() {
+            return new FlakyWriter();
+        }
+    }
+}
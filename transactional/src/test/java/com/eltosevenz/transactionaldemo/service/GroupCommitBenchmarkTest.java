@@ -0,0 +1,80 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Per-order transactions vs group commit at several batch windows.
+// Run with: mvn test -Dtest=GroupCommitBenchmarkTest -Dbenchmark=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class GroupCommitBenchmarkTest {
+
+    private static final String CODE = "GROUPED";
+    private static final int CLIENTS = 64;
+    private static final int ORDERS = 20_000;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Test
+    void compareBatchWindows() throws Exception {
+        report("per-order", (code, quantity) ->
+                CompletableFuture.completedFuture(orderService.placeOrder(code, quantity, StockUpdateMode.ATOMIC)));
+
+        for (long windowMs : new long[]{1, 5, 20}) {
+            try (GroupCommitOrderPipeline pipeline = new GroupCommitOrderPipeline(orderService, 10_000, 500, windowMs)) {
+                report("group " + windowMs + "ms", pipeline::submit);
+            }
+        }
+    }
+
+    private void report(String name, BiFunction<String, Integer, CompletableFuture<String>> placeOrder) throws Exception {
+        orderRepository.deleteAllInBatch();
+        ProductList product = productRepository.findByCode(CODE);
+        if (product == null) {
+            product = new ProductList();
+            product.setCode(CODE);
+            product.setName("Group commit product");
+        }
+        product.setStock(ORDERS);
+        productRepository.save(product);
+
+        long[] latencies = new long[ORDERS];
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            int index = i;
+            clients.execute(() -> {
+                long sent = System.nanoTime();
+                placeOrder.apply(CODE, 1).join();
+                latencies[index] = System.nanoTime() - sent;
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(ORDERS, orderRepository.count());
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %8.0f orders/s  p50=%.2fms p99=%.2fms%n", name, ORDERS / seconds,
+                latencies[ORDERS / 2] / 1e6, latencies[ORDERS * 99 / 100] / 1e6);
+    }
+}
@@ -0,0 +1,71 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GroupCommitOrderPipelineTest {
+
+    @Test
+    void ordersSubmittedWhileClosingAreNeverLeftHanging() throws Exception {
+        OrderRequestService orderService = mock(OrderRequestService.class);
+        when(orderService.placeOrderGroup(anyList())).thenAnswer(invocation -> {
+            List<OrderLine> lines = invocation.getArgument(0);
+            return lines.stream().map(line -> OrderResult.accepted(line, new OrderRequest())).toList();
+        });
+
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 50; round++) {
+                GroupCommitOrderPipeline pipeline = new GroupCommitOrderPipeline(orderService, 10_000, 50, 1);
+                Queue<CompletableFuture<String>> results = new ConcurrentLinkedQueue<>();
+                CountDownLatch started = new CountDownLatch(4);
+                CountDownLatch finished = new CountDownLatch(4);
+                for (int t = 0; t < 4; t++) {
+                    submitters.execute(() -> {
+                        started.countDown();
+                        // Until the pipeline is shut down, so some submits overlap with close()
+                        try {
+                            while (true) {
+                                CompletableFuture<String> result = pipeline.submit("P001", 1);
+                                results.add(result);
+                                if (result.isCompletedExceptionally()
+                                        && result.exceptionNow() instanceof IllegalStateException) {
+                                    return;
+                                }
+                            }
+                        } finally {
+                            finished.countDown();
+                        }
+                    });
+                }
+                started.await();
+                pipeline.close();
+                assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+                for (CompletableFuture<String> result : results) {
+                    try {
+                        result.get(5, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        // Refused: shut down, or the queue was full
+                    } catch (TimeoutException e) {
+                        fail("Order submitted in round " + round + " never completed");
+                    }
+                }
+            }
+        } finally {
+            submitters.shutdownNow();
+        }
+    }
+}
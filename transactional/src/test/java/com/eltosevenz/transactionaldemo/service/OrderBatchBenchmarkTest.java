@@ -0,0 +1,110 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Per-order placeOrder vs /api/orders/batch at the service layer.
+// Run with: mvn test -Dtest=OrderBatchBenchmarkTest -Dbenchmark=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderBatchBenchmarkTest {
+
+    private static final String CODE = "BENCH";
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private OrderBatchService orderBatchService;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Test
+    void compareSingleAndBatchPlacement() {
+        // Warm-up: on one vCPU the per-order path needs a few hundred thousand orders before the JIT is done
+        // with it. Without this, and with the smaller sizes measured first, they mostly measured the JIT.
+        placeSingle(100_000);
+        placeBatched(100_000);
+
+        for (int orders : new int[]{100_000, 10_000, 1_000}) {
+            // Best of three, the timings only include placing the orders
+            long singleMs = Long.MAX_VALUE;
+            long batchMs = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                singleMs = Math.min(singleMs, placeSingle(orders));
+                batchMs = Math.min(batchMs, placeBatched(orders));
+            }
+
+            System.out.printf("orders=%d single=%dms (%.0f/s) batch=%dms (%.0f/s)%n",
+                    orders, singleMs, orders * 1000.0 / Math.max(1, singleMs),
+                    batchMs, orders * 1000.0 / Math.max(1, batchMs));
+        }
+    }
+
+    private long placeSingle(int orders) {
+        resetStock(orders);
+        long ordersBefore = orderRepository.count();
+        long start = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            orderService.placeOrder(CODE, 1);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertPlaced(orders, ordersBefore);
+        return elapsedMs;
+    }
+
+    private long placeBatched(int orders) {
+        resetStock(orders);
+        long ordersBefore = orderRepository.count();
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (int i = 0; i < orders; i += BATCH_SIZE) {
+            List<OrderLine> lines = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(orders, i + BATCH_SIZE); j++) {
+                lines.add(new OrderLine(CODE, 1));
+            }
+            for (OrderResult result : orderBatchService.placeOrders(lines)) {
+                accepted += result.isAccepted() ? 1 : 0;
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(orders, accepted);
+        assertPlaced(orders, ordersBefore);
+        return elapsedMs;
+    }
+
+    // Every order was written and the stock was used up exactly
+    private void assertPlaced(int orders, long ordersBefore) {
+        assertEquals(ordersBefore + orders, orderRepository.count());
+        assertEquals(0, productRepository.findByCode(CODE).getStock());
+    }
+
+    // Orders are kept: deleting hundreds of thousands of rows between runs slowed down the next run
+    private void resetStock(int stock) {
+        ProductList product = productRepository.findByCode(CODE);
+        if (product == null) {
+            product = new ProductList();
+            product.setCode(CODE);
+            product.setName("Benchmark product");
+        }
+        product.setStock(stock);
+        productRepository.save(product);
+    }
+}
@@ -0,0 +1,118 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class OrderBatchServiceTest {
+
+    @Autowired
+    private OrderBatchService orderBatchService;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Test
+    void mixesPlainAndShardedProductsInOneBatch() throws InvalidStockException {
+        createProduct("BATCH-PLAIN", 10);
+        createProduct("BATCH-HOT", 40);
+        shardedStock.reshard("BATCH-HOT", 4);
+
+        List<OrderResult> results = orderBatchService.placeOrders(List.of(
+                new OrderLine("BATCH-HOT", 10),
+                new OrderLine("BATCH-PLAIN", 4),
+                new OrderLine("BATCH-HOT", 35),
+                new OrderLine("BATCH-MISSING", 1),
+                new OrderLine("BATCH-HOT", 30),
+                new OrderLine("BATCH-PLAIN", 7)));
+
+        assertTrue(results.get(0).isAccepted());
+        assertTrue(results.get(1).isAccepted());
+        assertFalse(results.get(2).isAccepted());
+        assertFalse(results.get(3).isAccepted());
+        // Taken across shards once no single shard covers it
+        assertTrue(results.get(4).isAccepted());
+        assertFalse(results.get(5).isAccepted());
+
+        assertEquals(0, shardedStock.totalStock("BATCH-HOT"));
+        assertEquals(0, productRepository.findByCode("BATCH-HOT").getStock());
+        assertEquals(6, productRepository.findByCode("BATCH-PLAIN").getStock());
+    }
+
+    @Test
+    void crossShardTakeSeesEarlierDecrementsOfTheSameTransaction() throws InvalidStockException {
+        createProduct("BATCH-SPLIT", 40);
+        shardedStock.reshard("BATCH-SPLIT", 4);
+
+        // 10 per shard: the first and last lines need several shards, the middle one fits in a single shard
+        List<OrderResult> results = orderBatchService.placeOrders(List.of(
+                new OrderLine("BATCH-SPLIT", 15),
+                new OrderLine("BATCH-SPLIT", 8),
+                new OrderLine("BATCH-SPLIT", 17),
+                new OrderLine("BATCH-SPLIT", 1)));
+
+        assertTrue(results.get(0).isAccepted());
+        assertTrue(results.get(1).isAccepted());
+        assertTrue(results.get(2).isAccepted());
+        assertFalse(results.get(3).isAccepted());
+        assertEquals(0, shardedStock.totalStock("BATCH-SPLIT"));
+    }
+
+    @Test
+    void batchesWithOppositeLineOrderDoNotDeadlock() throws Exception {
+        createProduct("BATCH-LOCK-A", 400);
+        createProduct("BATCH-LOCK-B", 400);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> forward = pool.submit(() -> placeBatches("BATCH-LOCK-A", "BATCH-LOCK-B"));
+            Future<?> backward = pool.submit(() -> placeBatches("BATCH-LOCK-B", "BATCH-LOCK-A"));
+            // A lock cycle would fail one of them with a deadlock or lock timeout. H2 happens to lock an IN list
+            // in index order anyway; the ORDER BY in findAllByCodeInOrderByCode makes that hold on any database.
+            forward.get();
+            backward.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, productRepository.findByCode("BATCH-LOCK-A").getStock());
+        assertEquals(0, productRepository.findByCode("BATCH-LOCK-B").getStock());
+    }
+
+    private void placeBatches(String first, String second) {
+        for (int i = 0; i < 200; i++) {
+            List<OrderResult> results = orderBatchService.placeOrders(List.of(new OrderLine(first, 1), new OrderLine(second, 1)));
+            assertTrue(results.get(0).isAccepted());
+            assertTrue(results.get(1).isAccepted());
+        }
+    }
+
+    private void createProduct(String code, int stock) throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode(code);
+        product.setName(code);
+        product.setStock(stock);
+        productService.createProduct(product);
+    }
+}
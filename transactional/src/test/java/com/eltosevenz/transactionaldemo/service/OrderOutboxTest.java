@@ -0,0 +1,171 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderPlacedEvent;
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "orders.outbox.enabled=true",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}"
+})
+@EmbeddedKafka(kraft = true, partitions = 3, topics = "order-events")
+class OrderOutboxTest {
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private OrderOutbox outbox;
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void publishesCommittedOrdersInOrder() throws Exception {
+        ProductList product = new ProductList();
+        product.setCode("OUTBOX");
+        product.setName("Outbox product");
+        product.setStock(100);
+        productService.createProduct(product);
+
+        for (int i = 0; i < 10; i++) {
+            orderService.placeOrder("OUTBOX", 1, StockUpdateMode.READ_MODIFY_WRITE);
+            orderService.placeOrder("OUTBOX", 1, StockUpdateMode.ATOMIC);
+        }
+        orderService.placeOrderGroup(List.of(new OrderLine("OUTBOX", 2), new OrderLine("OUTBOX", 1000)));
+        // Rolled back, so no event
+        assertThrows(RuntimeException.class, () -> orderService.placeOrder("OUTBOX", 1000));
+
+        List<OrderPlacedEvent> events = new ArrayList<>();
+        Set<String> eventIds = new HashSet<>();
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-test", "false", broker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, String> consumer = new KafkaConsumer<>(props, new StringDeserializer(), new StringDeserializer())) {
+            consumer.subscribe(List.of("order-events"));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (events.size() < 21 && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+                    if (!"OUTBOX".equals(record.key())) {
+                        continue;
+                    }
+                    eventIds.add(new String(record.headers().lastHeader("eventId").value()));
+                    events.add(objectMapper.readValue(record.value(), OrderPlacedEvent.class));
+                }
+            }
+        }
+
+        assertEquals(21, events.size());
+        assertEquals(21, eventIds.size());
+        // One key, so one partition: the events arrive in the order the orders committed
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).orderId() > events.get(i - 1).orderId());
+        }
+        assertEquals(2, events.get(20).quantity());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (outboxRepository.countBySentAtIsNull() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, outboxRepository.countBySentAtIsNull());
+    }
+
+    @Test
+    void eventsOfOneProductGetIdsInCommitOrder() throws Exception {
+        ProductList product = new ProductList();
+        product.setCode("OUTBOX-HOT");
+        product.setName("Outbox product 2");
+        product.setStock(100);
+        productService.createProduct(product);
+
+        // Called directly, so no other row (stock shards, rollup buckets) orders the two transactions
+        CountDownLatch firstRecorded = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            outbox.record(order("OUTBOX-HOT", 1));
+            firstRecorded.countDown();
+            try {
+                releaseFirst.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(firstRecorded.await(10, TimeUnit.SECONDS));
+
+        // No lock between the two: the second one commits while the first is still open
+        transaction.executeWithoutResult(status -> outbox.record(order("OUTBOX-HOT", 2)));
+        assertFalse(first.isDone());
+        releaseFirst.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        List<Integer> quantitiesById = outboxRepository.findAll().stream()
+                .filter(event -> "OUTBOX-HOT".equals(event.getEventKey()))
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .map(event -> {
+                    try {
+                        return objectMapper.readValue(event.getPayload(), OrderPlacedEvent.class).quantity();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+        // The events are inserted at commit, so the relay publishes them in commit order
+        assertEquals(List.of(2, 1), quantitiesById);
+    }
+
+    private static OrderRequest order(String productCode, int quantity) {
+        OrderRequest order = new OrderRequest();
+        // Never saved, the event only needs an id to carry
+        order.setId((long) -quantity);
+        order.setProductCode(productCode);
+        order.setQuantity(quantity);
+        order.setOrderDate(new Date());
+        return order;
+    }
+}
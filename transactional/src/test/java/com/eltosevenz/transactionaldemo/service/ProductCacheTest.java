@@ -0,0 +1,131 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ProductCacheTest {
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    @Test
+    void servesCommittedStockAfterEveryWrite() throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode("CACHED");
+        product.setName("Cached product");
+        product.setStock(100);
+        productService.createProduct(product);
+        assertEquals(100, productCache.findByCode("CACHED").getStock());
+
+        productService.updateStock(product.getId(), 80);
+        assertEquals(80, productCache.findByCode("CACHED").getStock());
+
+        productService.updateStockOptimistic(product.getId(), 70);
+        assertEquals(70, productCache.findByCode("CACHED").getStock());
+
+        orderService.placeOrder("CACHED", 5);
+        assertEquals(65, productCache.findByCode("CACHED").getStock());
+
+        ProductList copy = productCache.findByCode("CACHED");
+        copy.setStock(1);
+        assertEquals(65, productCache.findByCode("CACHED").getStock());
+        assertTrue(productCache.stats().hitCount() > 0);
+    }
+
+    @Test
+    void ordersKeepTheEntryCachedAndCurrent() throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode("HIT");
+        product.setName("Hit product");
+        product.setStock(100);
+        productService.createProduct(product);
+        orderService.placeOrder("HIT", 1);
+
+        // Every further order reads the row from the cache and leaves the committed row behind
+        long misses = productCache.stats().missCount();
+        for (int i = 0; i < 10; i++) {
+            orderService.placeOrder("HIT", 1);
+        }
+        assertEquals(misses, productCache.stats().missCount());
+        assertEquals(89, productCache.findByCode("HIT").getStock());
+
+        // A failed order leaves nothing stale behind
+        assertThrows(RuntimeException.class, () -> orderService.placeOrder("HIT", 1_000));
+        productService.updateStock(product.getId(), 5);
+        assertEquals(5, productCache.findByCode("HIT").getStock());
+        orderService.placeOrder("HIT", 5);
+        assertEquals(0, productCache.findByCode("HIT").getStock());
+    }
+
+    @Test
+    void reshardingEvictsTheCachedRow() throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode("RESHARDED");
+        product.setName("Resharded product");
+        product.setStock(40);
+        productService.createProduct(product);
+        assertEquals(40, productCache.findByCode("RESHARDED").getStock());
+
+        // The stock moves into the shards, PRODUCT_LIST keeps 0
+        shardedStockService.reshard("RESHARDED", 4);
+        assertEquals(0, productCache.findByCode("RESHARDED").getStock());
+
+        shardedStockService.reshard("RESHARDED", 0);
+        assertEquals(40, productCache.findByCode("RESHARDED").getStock());
+    }
+
+    @Test
+    void concurrentReadersNeverSeeAnOlderStockAfterCommit() throws Exception {
+        ProductList product = new ProductList();
+        product.setCode("RACED");
+        product.setName("Raced product");
+        product.setStock(0);
+        productService.createProduct(product);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        Future<?>[] futures = new Future<?>[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = readers.submit(() -> {
+                while (running.get()) {
+                    productCache.findByCode("RACED");
+                }
+            });
+        }
+
+        try {
+            for (int stock = 1; stock <= 200; stock++) {
+                productService.updateStock(product.getId(), stock);
+                assertEquals(stock, productCache.findByCode("RACED").getStock());
+            }
+        } finally {
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            readers.shutdown();
+        }
+    }
+}
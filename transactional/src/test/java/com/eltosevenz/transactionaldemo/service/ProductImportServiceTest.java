@@ -0,0 +1,227 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ImportFormat;
+import com.eltosevenz.transactionaldemo.model.ImportReport;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+// Own database, the spy gives this test a context of its own anyway
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-import",
+        "products.import.max-errors=3"
+})
+class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void csvHeaderMayReorderColumns() throws IOException {
+        ImportReport report = importCsv("""
+                stock,Code,name
+                5,IMP-H1,Hat
+
+                7,IMP-H2,Hood
+                """, 10);
+
+        assertEquals(2, report.getRows());
+        assertEquals(2, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertEquals(1, report.getChunks());
+        assertProduct("IMP-H1", "Hat", 5);
+        assertProduct("IMP-H2", "Hood", 7);
+    }
+
+    @Test
+    void csvWithoutHeaderUsesCodeNameStock() throws IOException {
+        ImportReport report = importCsv("""
+                IMP-N1,Nail,3
+                IMP-N2,Nut,4
+                IMP-N3,Bolt
+                """, 10);
+
+        assertEquals(3, report.getRows());
+        assertEquals(2, report.getImported());
+        assertError(report.getErrors().get(0), 3, null, "Malformed row: expected 3 fields, found 2");
+        assertProduct("IMP-N1", "Nail", 3);
+        assertProduct("IMP-N2", "Nut", 4);
+    }
+
+    @Test
+    void quotedCsvFieldsKeepCommasAndQuotes() throws IOException {
+        ImportReport report = importCsv("""
+                code,name,stock
+                IMP-Q1,"Desk, oak ""large""\",2
+                "IMP-Q2","Lamp", 6
+                IMP-Q3,"Chair,1
+                """, 10);
+
+        assertEquals(2, report.getImported());
+        assertProduct("IMP-Q1", "Desk, oak \"large\"", 2);
+        assertProduct("IMP-Q2", "Lamp", 6);
+        assertError(report.getErrors().get(0), 3, null, "Malformed row: unterminated quoted field");
+    }
+
+    @Test
+    void ndjsonRowsAreValidatedOneByOne() throws IOException {
+        ImportReport report = importProducts(ImportFormat.NDJSON, """
+                {"code": "IMP-J1", "name": "Jar", "stock": 12}
+                {"code": "IMP-J2", "name": "Jug"}
+                {"code": "IMP-J3", "name": "Jam", "stock": "many"}
+                [1, 2, 3]
+                {"code": "IMP-J5",
+                {"code": "IMP-J6", "stock": 0}
+                """, 10);
+
+        assertEquals(6, report.getRows());
+        assertEquals(2, report.getImported());
+        assertEquals(4, report.getFailed());
+        assertProduct("IMP-J1", "Jar", 12);
+        assertProduct("IMP-J6", null, 0);
+        assertError(report.getErrors().get(0), 2, "IMP-J2", "Stock is required.");
+        assertError(report.getErrors().get(1), 3, null, "Malformed row: stock is not an integer");
+        assertError(report.getErrors().get(2), 4, null, "Malformed row: expected a JSON object");
+    }
+
+    @Test
+    void negativeOrMissingStockAndMissingCodeAreRejected() throws IOException {
+        ImportReport report = importCsv("""
+                IMP-S1,Negative,-1
+                IMP-S2,Missing,
+                ,No code,1
+                IMP-S4,Fine,1
+                """, 10);
+
+        assertEquals(1, report.getImported());
+        assertError(report.getErrors().get(0), 1, "IMP-S1", "Stock cannot be negative.");
+        assertError(report.getErrors().get(1), 2, "IMP-S2", "Stock is required.");
+        assertError(report.getErrors().get(2), 3, null, "Code is required.");
+        assertNull(productRepository.findByCode("IMP-S1"));
+        assertProduct("IMP-S4", "Fine", 1);
+    }
+
+    @Test
+    void duplicateCodesAreRejectedWithinAChunkAcrossChunksAndAgainstTheCatalog() throws IOException {
+        ImportReport report = importCsv("""
+                IMP-D1,First,1
+                IMP-D1,Again in the chunk,2
+                P001,Already in the catalog,3
+                IMP-D1,Again in a later chunk,4
+                IMP-D2,Second,5
+                """, 3);
+
+        assertEquals(2, report.getImported());
+        assertEquals(2, report.getChunks());
+        assertError(report.getErrors().get(0), 2, "IMP-D1", "Product code already exists: IMP-D1");
+        assertError(report.getErrors().get(1), 3, "P001", "Product code already exists: P001");
+        assertError(report.getErrors().get(2), 4, "IMP-D1", "Product code already exists: IMP-D1");
+        assertProduct("IMP-D1", "First", 1);
+        assertEquals("Laptop", productRepository.findByCode("P001").getName());
+    }
+
+    @Test
+    void errorListStopsAtMaxErrorsButTheCountDoesNot() throws IOException {
+        ImportReport report = importCsv("""
+                IMP-E1,Bad,-1
+                IMP-E2,Bad,-1
+                IMP-E3,Bad,-1
+                IMP-E4,Good,1
+                IMP-E5,Bad,-1
+                IMP-E6,Bad,-1
+                """, 10);
+
+        assertEquals(1, report.getImported());
+        assertEquals(5, report.getFailed());
+        assertEquals(3, report.getErrors().size());
+        assertTrue(report.isErrorsTruncated());
+        assertEquals(List.of(1L, 2L, 3L), report.getErrors().stream().map(ImportReport.RowError::row).toList());
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRowAndOnlyTheBadRowIsLost() throws IOException {
+        // Longer than the code column: passes validation but fails the INSERT
+        String tooLong = "IMP-L" + "X".repeat(300);
+        ImportReport report = importCsv("""
+                IMP-L1,One,1
+                IMP-L2,Two,2
+                IMP-L3,Three,3
+                %s,Four,4
+                IMP-L5,Five,5
+                """.formatted(tooLong), 2);
+
+        assertEquals(4, report.getImported());
+        assertEquals(3, report.getChunks());
+        assertEquals(1, report.getFailed());
+        assertEquals(4, report.getErrors().get(0).row());
+        assertTrue(report.getErrors().get(0).message().startsWith("Insert failed: "));
+        assertProduct("IMP-L3", "Three", 3);
+        assertProduct("IMP-L5", "Five", 5);
+    }
+
+    @Test
+    void databaseFailureStopsTheImportAndKeepsTheCommittedChunks() {
+        // The second chunk fails as a batch and again row by row, e.g. the database went away
+        DataAccessResourceFailureException down = new DataAccessResourceFailureException("Database is down");
+        doCallRealMethod().doThrow(down).when(jdbcTemplate)
+                .batchUpdate(startsWith("INSERT INTO PRODUCT_LIST"), anyCollection(), anyInt(), any());
+        doThrow(down).when(jdbcTemplate)
+                .update(startsWith("INSERT INTO PRODUCT_LIST"), any(), any(), any());
+
+        assertThrows(DataAccessResourceFailureException.class, () -> importCsv("""
+                IMP-F1,One,1
+                IMP-F2,Two,2
+                IMP-F3,Three,3
+                IMP-F4,Four,4
+                IMP-F5,Five,5
+                """, 2));
+
+        assertProduct("IMP-F1", "One", 1);
+        assertProduct("IMP-F2", "Two", 2);
+        assertNull(productRepository.findByCode("IMP-F3"));
+        assertNull(productRepository.findByCode("IMP-F5"));
+    }
+
+    private ImportReport importCsv(String body, int chunkSize) throws IOException {
+        return importProducts(ImportFormat.CSV, body, chunkSize);
+    }
+
+    private ImportReport importProducts(ImportFormat format, String body, int chunkSize) throws IOException {
+        return importService.importProducts(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, chunkSize);
+    }
+
+    private void assertProduct(String code, String name, int stock) {
+        ProductList product = productRepository.findByCode(code);
+        assertNotNull(product, code);
+        assertEquals(name, product.getName());
+        assertEquals(stock, product.getStock());
+    }
+
+    private static void assertError(ImportReport.RowError error, long row, String code, String message) {
+        assertEquals(row, error.row());
+        assertEquals(code, error.code());
+        assertEquals(message, error.message());
+    }
+}
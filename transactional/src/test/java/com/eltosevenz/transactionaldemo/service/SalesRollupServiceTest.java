@@ -0,0 +1,160 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.RollupGranularity;
+import com.eltosevenz.transactionaldemo.model.SalesRollup;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.SalesRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Own database: the backfill counts every unflagged order, and no other cached context shares its sequences
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:sales-rollups")
+class SalesRollupServiceTest {
+
+    private static final Instant ORDER_TIME = Instant.parse("2024-10-01T10:15:30Z");
+
+    @Autowired
+    private SalesRollupService rollupService;
+
+    @Autowired
+    private SalesRollupRepository rollupRepository;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void recordedSalesCommitAndRollBackWithTheirTransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> rollupService.record(List.of(order("RECORDED", 2), order("RECORDED", 3))));
+        transaction.executeWithoutResult(status -> {
+            rollupService.record(order("RECORDED", 100));
+            status.setRollbackOnly();
+        });
+        rollupService.fold();
+
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            List<SalesRollup> buckets = buckets("RECORDED", granularity);
+            assertEquals(1, buckets.size(), granularity.name());
+            assertEquals(granularity.bucketOf(LocalDateTime.parse("2024-10-01T10:15:30")), buckets.get(0).getBucketStart());
+            assertEquals(5, buckets.get(0).getUnits());
+            assertEquals(2, buckets.get(0).getOrderCount());
+        }
+    }
+
+    @Test
+    void ordersOnOneProductDoNotWaitForEachOthersRollups() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch firstRecorded = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            rollupService.record(order("UNCONTENDED", 1));
+            firstRecorded.countDown();
+            try {
+                releaseFirst.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            assertTrue(firstRecorded.await(5, TimeUnit.SECONDS));
+            // Same buckets while the first transaction is still open: only inserts, no shared row to wait on
+            CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status ->
+                    rollupService.record(order("UNCONTENDED", 1)))).get(5, TimeUnit.SECONDS);
+        } finally {
+            releaseFirst.countDown();
+        }
+        first.get(5, TimeUnit.SECONDS);
+
+        rollupService.fold();
+        assertEquals(2, buckets("UNCONTENDED", RollupGranularity.DAY).get(0).getUnits());
+    }
+
+    @Test
+    void placedOrdersAreCountedOnceTheyCommit() throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode("ROLLED");
+        product.setName("Rolled up product");
+        product.setStock(10);
+        productService.createProduct(product);
+
+        orderService.placeOrder("ROLLED", 4);
+        orderService.placeOrder("ROLLED", 3, StockUpdateMode.ATOMIC);
+        assertThrows(RuntimeException.class, () -> orderService.placeOrder("ROLLED", 5));
+        rollupService.fold();
+
+        // Orders placed around midnight may land in two day buckets
+        LocalDateTime today = RollupGranularity.DAY.bucketOf(LocalDateTime.now(ZoneOffset.UTC));
+        List<SalesRollup> days = rollupRepository.findByProductCodeAndGranularityAndBucketStartBetweenOrderByBucketStart(
+                "ROLLED", RollupGranularity.DAY, today.minusDays(1), today.plusDays(1));
+        assertEquals(7, days.stream().mapToLong(SalesRollup::getUnits).sum());
+        assertEquals(2, days.stream().mapToLong(SalesRollup::getOrderCount).sum());
+    }
+
+    @Test
+    void backfillCountsEveryOrderOnceInKeysetChunks() {
+        List<OrderRequest> legacy = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            legacy.add(order("LEGACY", i));
+        }
+        orderRepository.saveAll(legacy);
+
+        SalesRollupService.BackfillResult result = rollupService.backfill(3);
+        assertEquals(7, result.orders());
+        assertEquals(3, result.chunks());
+        assertTrue(orderRepository.findAllById(legacy.stream().map(OrderRequest::getId).toList()).stream()
+                .allMatch(order -> Boolean.TRUE.equals(order.getRolledUp())));
+
+        SalesRollup day = buckets("LEGACY", RollupGranularity.DAY).get(0);
+        assertEquals(28, day.getUnits());
+        assertEquals(7, day.getOrderCount());
+
+        // Rerunning finds nothing left to count
+        SalesRollupService.BackfillResult rerun = rollupService.backfill(3);
+        assertEquals(0, rerun.orders());
+        assertEquals(0, rerun.chunks());
+        assertEquals(28, buckets("LEGACY", RollupGranularity.DAY).get(0).getUnits());
+    }
+
+    private List<SalesRollup> buckets(String productCode, RollupGranularity granularity) {
+        return rollupRepository.findByProductCodeAndGranularityAndBucketStartBetweenOrderByBucketStart(
+                productCode, granularity, LocalDateTime.parse("2024-01-01T00:00:00"), LocalDateTime.parse("2025-01-01T00:00:00"));
+    }
+
+    private static OrderRequest order(String productCode, int quantity) {
+        OrderRequest order = new OrderRequest();
+        order.setProductCode(productCode);
+        order.setQuantity(quantity);
+        order.setOrderDate(Date.from(ORDER_TIME));
+        return order;
+    }
+}
@@ -0,0 +1,83 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Order throughput on one hot product against its shard count.
+// Run with: mvn test -Dtest=ShardedStockBenchmarkTest -Dbenchmark=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ShardedStockBenchmarkTest {
+
+    private static final String CODE = "HOT";
+    private static final int THREADS = 32;
+    private static final int ORDERS = 10_000;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Test
+    void throughputByShardCount() throws InterruptedException {
+        for (int shards : new int[]{0, 1, 2, 4, 8, 16}) {
+            orderRepository.deleteAllInBatch();
+            shardedStockService.reshard(CODE, 0);
+            ProductList product = productRepository.findByCode(CODE);
+            product.setStock(ORDERS);
+            productRepository.save(product);
+            shardedStockService.reshard(CODE, shards);
+
+            AtomicInteger accepted = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            for (int i = 0; i < ORDERS; i++) {
+                pool.execute(() -> {
+                    try {
+                        orderService.placeOrder(CODE, 1, StockUpdateMode.ATOMIC);
+                        accepted.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // counted as rejected
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            assertEquals(ORDERS, accepted.get());
+            System.out.printf("shards=%2d %8.0f orders/s%n", shards, ORDERS / seconds);
+        }
+    }
+
+    @BeforeEach
+    void createProduct() {
+        if (productRepository.findByCode(CODE) == null) {
+            ProductList product = new ProductList();
+            product.setCode(CODE);
+            product.setName("Hot product");
+            productRepository.save(product);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Both modes from 16 threads against one product. The correctness checks run in the default build,
+// the throughput comparison with: mvn test -Dtest=StockDecrementContentionTest -Dbenchmark=true
+// Version conflicts on the read-modify-write path are expected here, Hibernate's batch logger is silenced.
+@SpringBootTest(properties = "logging.level.org.hibernate.orm.jdbc.batch=OFF")
+class StockDecrementContentionTest {
+
+    private static final String CODE = "CONTENDED";
+    private static final int STOCK = 1_000;
+    private static final int ATTEMPTS = 2_000;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private OrderRequestService orderService;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Test
+    void atomicDecrementNeverOversells() throws InterruptedException {
+        Result atomic = run(StockUpdateMode.ATOMIC);
+
+        assertEquals(STOCK, atomic.accepted);
+        assertEquals(0, atomic.stock);
+        assertEquals(STOCK, atomic.orders);
+    }
+
+    // With the @Version check a conflicting order fails instead of overwriting, so fewer orders may be
+    // accepted but the stock always matches them
+    @Test
+    void readModifyWriteLosesNoUpdates() throws InterruptedException {
+        Result readModifyWrite = run(StockUpdateMode.READ_MODIFY_WRITE);
+
+        assertTrue(readModifyWrite.accepted > 0);
+        assertEquals(readModifyWrite.accepted, readModifyWrite.orders);
+        assertEquals(STOCK - readModifyWrite.accepted, readModifyWrite.stock);
+    }
+
+    @Test
+    void rejectsNonPositiveQuantities() {
+        resetStock();
+        for (StockUpdateMode mode : StockUpdateMode.values()) {
+            assertThrows(IllegalArgumentException.class, () -> orderService.placeOrder(CODE, -5, mode));
+            assertThrows(IllegalArgumentException.class, () -> orderService.placeOrder(CODE, 0, mode));
+        }
+        assertEquals(STOCK, productRepository.findByCode(CODE).getStock());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void compareThroughput() throws InterruptedException {
+        for (StockUpdateMode mode : new StockUpdateMode[]{StockUpdateMode.ATOMIC, StockUpdateMode.READ_MODIFY_WRITE}) {
+            Result result = run(mode);
+            System.out.printf("%-17s accepted=%d stock=%d orders=%d %.0f attempts/s%n",
+                    mode, result.accepted, result.stock, result.orders, result.throughput);
+        }
+    }
+
+    private Result run(StockUpdateMode mode) throws InterruptedException {
+        resetStock();
+
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int i = 0; i < ATTEMPTS; i++) {
+            pool.execute(() -> {
+                try {
+                    orderService.placeOrder(CODE, 1, mode);
+                    accepted.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // out of stock, or a version conflict on the read-modify-write path
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        return new Result(accepted.get(), productRepository.findByCode(CODE).getStock(),
+                orderRepository.count(), ATTEMPTS / seconds);
+    }
+
+    private void resetStock() {
+        orderRepository.deleteAllInBatch();
+        ProductList product = productRepository.findByCode(CODE);
+        if (product == null) {
+            product = new ProductList();
+            product.setCode(CODE);
+            product.setName("Contended product");
+        }
+        product.setStock(STOCK);
+        productRepository.save(product);
+    }
+
+    private record Result(int accepted, int stock, long orders, double throughput) {
+    }
+}
@@ -0,0 +1,252 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.exception.InvalidStockException;
+import com.eltosevenz.transactionaldemo.model.OrderLine;
+import com.eltosevenz.transactionaldemo.model.OrderRequest;
+import com.eltosevenz.transactionaldemo.model.OrderResult;
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import com.eltosevenz.transactionaldemo.model.ReservationDeadLetter;
+import com.eltosevenz.transactionaldemo.model.StockUpdateMode;
+import com.eltosevenz.transactionaldemo.repository.OrderRequestRepository;
+import com.eltosevenz.transactionaldemo.repository.ProductListRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+// The writer thread never ticks here, every flush is driven by the test
+@SpringBootTest(properties = {
+        "orders.reservation-ledger.enabled=true",
+        "orders.reservation-ledger.flush-interval-ms=3600000",
+        "orders.reservation-ledger.max-flush-attempts=2"
+})
+class StockReservationLedgerTest {
+
+    @Autowired
+    private StockReservationLedger ledger;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private ProductListRepository productRepository;
+
+    @Autowired
+    private OrderRequestRepository orderRepository;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    @Autowired
+    private OrderBatchService orderBatchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Calls the real write-behind unless a test stubs a failure
+    @SpyBean
+    private OrderRequestService orderService;
+
+    @Test
+    void reservesInMemoryAndFlushesOneDecrementPerProduct() throws InvalidStockException {
+        createProduct("LEDGER-A", 10);
+
+        assertEquals("Order accepted!", ledger.reserve("LEDGER-A", 3));
+        assertEquals("Order accepted!", ledger.reserve("LEDGER-A", 4));
+        assertThrows(RuntimeException.class, () -> ledger.reserve("LEDGER-A", 4));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve("LEDGER-A", 0));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve("LEDGER-MISSING", 1));
+        // Nothing is written until the flush
+        assertEquals(10, productRepository.findByCode("LEDGER-A").getStock());
+        assertEquals(2, ledger.queuedReservations());
+
+        assertTrue(ledger.flush());
+        assertEquals(3, productRepository.findByCode("LEDGER-A").getStock());
+        assertEquals(2, ordersFor("LEDGER-A").size());
+        assertEquals(0, ledger.queuedReservations());
+    }
+
+    @Test
+    void failingBatchIsRetriedThenSplitAndTheBadEntryDeadLettered() throws InvalidStockException {
+        createProduct("LEDGER-OK", 10);
+        ProductList doomed = createProduct("LEDGER-GONE", 10);
+
+        ledger.reserve("LEDGER-OK", 2);
+        ledger.reserve("LEDGER-GONE", 3);
+        ledger.reserve("LEDGER-OK", 1);
+        // The write-behind can no longer find the row, so every batch holding this order fails
+        productRepository.delete(doomed);
+
+        assertFalse(ledger.flush());
+        assertEquals(3, ledger.queuedReservations());
+        assertEquals(10, productRepository.findByCode("LEDGER-OK").getStock());
+
+        // Second and last attempt: the batch is split, the healthy orders commit
+        assertFalse(ledger.flush());
+        assertEquals(0, ledger.queuedReservations());
+        assertEquals(7, productRepository.findByCode("LEDGER-OK").getStock());
+        assertEquals(2, ordersFor("LEDGER-OK").size());
+        assertTrue(ordersFor("LEDGER-GONE").isEmpty());
+
+        List<ReservationDeadLetter> deadLetters = deadLettersFor("LEDGER-GONE");
+        assertEquals(1, deadLetters.size());
+        assertEquals(3, deadLetters.get(0).getQuantity());
+        assertTrue(deadLetters.get(0).getReason() != null);
+
+        // The writer is healthy again
+        ledger.reserve("LEDGER-OK", 7);
+        assertTrue(ledger.flush());
+        assertEquals(0, productRepository.findByCode("LEDGER-OK").getStock());
+    }
+
+    @Test
+    void reservationsNoLongerCoveredByTheStockAreDeadLettered() throws InvalidStockException {
+        ProductList plain = createProduct("LEDGER-SHRUNK", 10);
+        createProduct("LEDGER-SHRUNK-HOT", 10);
+        shardedStock.reshard("LEDGER-SHRUNK-HOT", 2);
+
+        ledger.reserve("LEDGER-SHRUNK", 4);
+        ledger.reserve("LEDGER-SHRUNK-HOT", 6);
+        // Stock lowered behind the ledger's back, after the reservations were accepted
+        productService.updateStock(plain.getId(), 3);
+        productService.updateStock(productRepository.findByCode("LEDGER-SHRUNK-HOT").getId(), 5);
+
+        assertFalse(ledger.flush());
+        assertFalse(ledger.flush());
+        assertEquals(0, ledger.queuedReservations());
+
+        // Neither decrement was applied and no order was committed
+        assertEquals(3, productRepository.findByCode("LEDGER-SHRUNK").getStock());
+        assertEquals(5, shardedStock.totalStock("LEDGER-SHRUNK-HOT"));
+        assertTrue(ordersFor("LEDGER-SHRUNK").isEmpty());
+        assertTrue(ordersFor("LEDGER-SHRUNK-HOT").isEmpty());
+        assertEquals(1, deadLettersFor("LEDGER-SHRUNK").size());
+        assertEquals(1, deadLettersFor("LEDGER-SHRUNK-HOT").size());
+    }
+
+    // /api/orders/place goes to the ledger, /api/orders/batch and group commit write their orders themselves
+    @Test
+    void otherOrderPathsDoNotSellStockPromisedToReservations() throws InvalidStockException {
+        createProduct("LEDGER-MIXED", 10);
+        createProduct("LEDGER-MIXED-HOT", 10);
+        shardedStock.reshard("LEDGER-MIXED-HOT", 2);
+        ledger.reserve("LEDGER-MIXED", 6);
+        ledger.reserve("LEDGER-MIXED-HOT", 6);
+
+        // The database still shows 10 of each, but only 4 are left
+        List<OrderResult> batch = orderBatchService.placeOrders(List.of(
+                new OrderLine("LEDGER-MIXED", 5),
+                new OrderLine("LEDGER-MIXED-HOT", 5),
+                new OrderLine("LEDGER-MIXED", 3),
+                new OrderLine("LEDGER-MIXED-HOT", 4)));
+        assertFalse(batch.get(0).isAccepted());
+        assertFalse(batch.get(1).isAccepted());
+        assertTrue(batch.get(2).isAccepted());
+        assertTrue(batch.get(3).isAccepted());
+
+        assertThrows(RuntimeException.class, () -> orderService.placeOrder("LEDGER-MIXED", 2, StockUpdateMode.ATOMIC));
+        List<OrderResult> group = orderService.placeOrderGroup(List.of(
+                new OrderLine("LEDGER-MIXED", 2),
+                new OrderLine("LEDGER-MIXED", 1),
+                new OrderLine("LEDGER-MIXED-HOT", 1)));
+        assertFalse(group.get(0).isAccepted());
+        assertTrue(group.get(1).isAccepted());
+        assertFalse(group.get(2).isAccepted());
+        assertThrows(RuntimeException.class, () -> ledger.reserve("LEDGER-MIXED", 1));
+
+        // The reservations still commit, nothing is dead-lettered
+        assertTrue(ledger.flush());
+        assertEquals(0, productRepository.findByCode("LEDGER-MIXED").getStock());
+        assertEquals(0, shardedStock.totalStock("LEDGER-MIXED-HOT"));
+        assertEquals(3, ordersFor("LEDGER-MIXED").size());
+        assertEquals(2, ordersFor("LEDGER-MIXED-HOT").size());
+        assertTrue(deadLettersFor("LEDGER-MIXED").isEmpty());
+        assertTrue(deadLettersFor("LEDGER-MIXED-HOT").isEmpty());
+    }
+
+    @Test
+    void rolledBackBatchGivesItsStockBackToTheLedger() throws InvalidStockException {
+        createProduct("LEDGER-UNDONE", 10);
+        ledger.reserve("LEDGER-UNDONE", 2);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertTrue(orderBatchService.placeOrders(List.of(new OrderLine("LEDGER-UNDONE", 8))).get(0).isAccepted());
+            assertThrows(RuntimeException.class, () -> ledger.reserve("LEDGER-UNDONE", 1));
+            status.setRollbackOnly();
+        });
+
+        assertEquals("Order accepted!", ledger.reserve("LEDGER-UNDONE", 8));
+        assertTrue(ledger.flush());
+        assertEquals(0, productRepository.findByCode("LEDGER-UNDONE").getStock());
+    }
+
+    @Test
+    void transientFailuresAreRetriedUntilTheDatabaseIsBack() throws InvalidStockException {
+        createProduct("LEDGER-OUTAGE", 10);
+        ledger.reserve("LEDGER-OUTAGE", 2);
+        ledger.reserve("LEDGER-OUTAGE", 3);
+        doThrow(new CannotCreateTransactionException("Connection refused"))
+                .when(orderService).persistReservations(anyList());
+
+        // Far more failures than max-flush-attempts, and still nothing is split or dead-lettered
+        for (int i = 0; i < 10; i++) {
+            assertFalse(ledger.flush());
+        }
+        assertEquals(2, ledger.queuedReservations());
+        assertTrue(deadLettersFor("LEDGER-OUTAGE").isEmpty());
+        // The stock stays reserved
+        assertThrows(RuntimeException.class, () -> ledger.reserve("LEDGER-OUTAGE", 6));
+
+        doCallRealMethod().when(orderService).persistReservations(anyList());
+        assertTrue(ledger.flush());
+        assertEquals(5, productRepository.findByCode("LEDGER-OUTAGE").getStock());
+        assertEquals(2, ordersFor("LEDGER-OUTAGE").size());
+    }
+
+    @Test
+    void restartDrainsTheQueueAndReloadsCommittedStock() throws Exception {
+        createProduct("LEDGER-RESTART", 10);
+        ledger.reserve("LEDGER-RESTART", 4);
+
+        // Graceful shutdown flushes what is queued
+        ledger.stop();
+        assertEquals(6, productRepository.findByCode("LEDGER-RESTART").getStock());
+
+        // A fresh ledger holds no counters and starts from the committed stock
+        ledger.evict("LEDGER-RESTART");
+        ledger.start();
+        ledger.reserve("LEDGER-RESTART", 6);
+        assertThrows(RuntimeException.class, () -> ledger.reserve("LEDGER-RESTART", 1));
+        assertTrue(ledger.flush());
+        assertEquals(0, productRepository.findByCode("LEDGER-RESTART").getStock());
+    }
+
+    private ProductList createProduct(String code, int stock) throws InvalidStockException {
+        ProductList product = new ProductList();
+        product.setCode(code);
+        product.setName(code);
+        product.setStock(stock);
+        return productService.createProduct(product);
+    }
+
+    private List<ReservationDeadLetter> deadLettersFor(String code) {
+        return ledger.deadLetters().stream().filter(d -> code.equals(d.getProductCode())).toList();
+    }
+
+    private List<OrderRequest> ordersFor(String code) {
+        return orderRepository.findAll().stream().filter(o -> code.equals(o.getProductCode())).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.eltosevenz.transactionaldemo.service;
+
+import com.eltosevenz.transactionaldemo.model.ProductList;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Concurrent /api/product/update on one product: SERIALIZABLE updateStock vs updateStockOptimistic.
+// Run with: mvn test -Dtest=StockUpdateIsolationBenchmarkTest -Dbenchmark=true
+@SpringBootTest(properties = "logging.level.org.hibernate.orm.jdbc.batch=OFF")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StockUpdateIsolationBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int UPDATES = 4_000;
+
+    @Autowired
+    private ProductListService productService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void compareSerializableAndOptimistic() throws Exception {
+        ProductList product = new ProductList();
+        product.setCode("ISOLATION");
+        product.setName("Isolation benchmark product");
+        product.setStock(0);
+        productService.createProduct(product);
+        Long id = product.getId();
+
+        // Warm-up
+        run(stock -> productService.updateStock(id, stock));
+        run(stock -> productService.updateStockOptimistic(id, stock));
+
+        for (int round = 0; round < 2; round++) {
+            report("SERIALIZABLE", run(stock -> productService.updateStock(id, stock)));
+            double retries = meterRegistry.counter("stock.optimistic.retries", "method", "ProductListService.updateStockOptimistic").count();
+            double giveups = meterRegistry.counter("stock.optimistic.giveups", "method", "ProductListService.updateStockOptimistic").count();
+            report("OPTIMISTIC", run(stock -> productService.updateStockOptimistic(id, stock)));
+            System.out.printf("  optimistic retries=%.0f giveups=%.0f%n",
+                    meterRegistry.counter("stock.optimistic.retries", "method", "ProductListService.updateStockOptimistic").count() - retries,
+                    meterRegistry.counter("stock.optimistic.giveups", "method", "ProductListService.updateStockOptimistic").count() - giveups);
+        }
+    }
+
+    private Result run(IntConsumer update) throws InterruptedException {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            int stock = i;
+            pool.execute(() -> {
+                try {
+                    update.accept(stock);
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+        return new Result(succeeded.get(), failed.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void report(String mode, Result result) {
+        System.out.printf("%-12s succeeded=%d failed=%d %dms (%.0f updates/s)%n", mode, result.succeeded, result.failed,
+                result.elapsedMs, result.succeeded * 1000.0 / Math.max(1, result.elapsedMs));
+    }
+
+    private record Result(int succeeded, int failed, long elapsedMs) {
+    }
+}